@@ -3,13 +3,18 @@ package com.example.android.sunshine.app.common;
 public class Constants {
 
     // Weather Key constants
-    public static final String WEATHER_SERVICE_REQUIRE_PATH = "/weather_data_request";
-    public static final String WEATHER_DATA_PATH = "/weather";
-    public static final String WEATHER_KEY_UPDATE_TIME = "weather_update_time";
     public static final String WEATHER_KEY_TEMP_MAX = "weather_temp_max";
     public static final String WEATHER_KEY_TEMP_MIN = "weather_temp_min";
     public static final String WEATHER_KEY_ID = "weather_id";
 
+    // Forecast sync: the phone puts the latest ForecastDelta in a data item, the watch asks for
+    // the days it is missing by sending its version and acknowledges the versions it applies
+    public static final String WEATHER_DELTA_PATH = "/weather_delta";
+    public static final String WEATHER_SYNC_PATH = "/weather_sync";
+    public static final String WEATHER_ACK_PATH = "/weather_ack";
+    // The delta encoded as a ForecastDelta
+    public static final String WEATHER_KEY_DELTA = "weather_delta";
+
     // Watch Face Configuration Key Constants
     public static final String WATCH_FACE_SETTINGS_PATH = "/watch_face_config";
 }
@@ -0,0 +1,123 @@
+package com.example.android.sunshine.app.common;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The days of the forecast that changed between two versions of it, as the phone sends them to
+ * the watch.
+ *
+ * Every change to the phone's forecast makes a new version.  A delta from a base version holds
+ * the days that changed after it, so a watch at the base version or later gets to the delta's
+ * version by applying it.  A delta from version 0 holds every day and replaces whatever the
+ * watch had, whatever its version.  The delta also carries the range of days the forecast
+ * covers, so the watch drops the days that fell out of it.
+ *
+ * The encoding, big-endian, is a format version (byte), the base and new versions (long each),
+ * the first and last day of the forecast as Julian days (int each), then the changed days as a
+ * {@link WeatherPayload}.
+ */
+public final class ForecastDelta {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 1 + 8 + 8 + 4 + 4;
+
+    private final long mBaseVersion;
+    private final long mVersion;
+    private final int mFirstDay;
+    private final int mLastDay;
+    private final WeatherPayload mDays;
+
+    /**
+     * @param firstDay the first day of the whole forecast
+     * @param lastDay  the last day of the whole forecast, before firstDay if there is none
+     * @param days     the days that changed after the base version
+     */
+    public ForecastDelta(long baseVersion, long version, int firstDay, int lastDay, WeatherPayload days) {
+        if (baseVersion < 0 || version < baseVersion) {
+            throw new IllegalArgumentException("Bad versions: " + baseVersion + " to " + version);
+        }
+        mBaseVersion = baseVersion;
+        mVersion = version;
+        mFirstDay = firstDay;
+        mLastDay = lastDay;
+        mDays = days;
+    }
+
+    public byte[] toByteArray() {
+        byte[] days = mDays.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + days.length);
+        buffer.put((byte) FORMAT_VERSION);
+        buffer.putLong(mBaseVersion);
+        buffer.putLong(mVersion);
+        buffer.putInt(mFirstDay);
+        buffer.putInt(mLastDay);
+        buffer.put(days);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are of another format, truncated or corrupt
+     */
+    public static ForecastDelta fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            int format = buffer.get();
+            if (format != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown delta format: " + format);
+            }
+            long baseVersion = buffer.getLong();
+            long version = buffer.getLong();
+            int firstDay = buffer.getInt();
+            int lastDay = buffer.getInt();
+            WeatherPayload days = WeatherPayload.fromByteArray(Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length));
+            return new ForecastDelta(baseVersion, version, firstDay, lastDay, days);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Delta truncated", e);
+        }
+    }
+
+    public long getBaseVersion() {
+        return mBaseVersion;
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    // Whether the delta holds the whole forecast rather than changes to it
+    public boolean isFull() {
+        return mBaseVersion == 0;
+    }
+
+    public int getFirstDay() {
+        return mFirstDay;
+    }
+
+    public int getLastDay() {
+        return mLastDay;
+    }
+
+    public WeatherPayload getDays() {
+        return mDays;
+    }
+
+    /**
+     * A forecast version as the watch sends it in its sync requests and acknowledgements.
+     */
+    public static byte[] encodeVersion(long version) {
+        return ByteBuffer.allocate(8).putLong(version).array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a version
+     */
+    public static long decodeVersion(byte[] bytes) {
+        if (bytes == null || bytes.length != 8) {
+            throw new IllegalArgumentException("Not a version");
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
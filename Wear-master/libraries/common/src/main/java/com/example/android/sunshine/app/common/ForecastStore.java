@@ -0,0 +1,97 @@
+package com.example.android.sunshine.app.common;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The watch's copy of the phone's forecast, kept up to date by applying the deltas the phone
+ * sends.  Not thread safe.
+ */
+public final class ForecastStore {
+
+    // The delta was applied
+    public static final int APPLIED = 0;
+    // The store already had the delta's changes; nothing changed
+    public static final int STALE = 1;
+    // The delta starts after the store's version; the days in between are missing
+    public static final int GAP = 2;
+
+    private static final WeatherPayload EMPTY =
+            new WeatherPayload(true, new int[0], new int[0], new double[0], new double[0]);
+
+    private long mVersion;
+    private WeatherPayload mForecast;
+
+    public ForecastStore() {
+        this(0, EMPTY);
+    }
+
+    public ForecastStore(long version, WeatherPayload forecast) {
+        mVersion = version;
+        mForecast = forecast;
+    }
+
+    // The version of the phone's forecast the store holds, 0 before the first delta
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public WeatherPayload getForecast() {
+        return mForecast;
+    }
+
+    /**
+     * @return {@link #APPLIED}, {@link #STALE} or {@link #GAP}
+     */
+    public int apply(ForecastDelta delta) {
+        // A full delta always replaces the store, as the phone may have started its versions
+        // over, after being reinstalled for instance
+        if (!delta.isFull()) {
+            if (delta.getVersion() <= mVersion) {
+                return STALE;
+            }
+            if (delta.getBaseVersion() > mVersion) {
+                return GAP;
+            }
+        }
+
+        // Julian day to index of the day, in the forecast when positive or zero and in the
+        // delta's changes, as -(index + 1), when negative
+        Map<Integer, Integer> days = new TreeMap<Integer, Integer>();
+        if (!delta.isFull()) {
+            for (int i = 0; i < mForecast.getDayCount(); i++) {
+                int day = mForecast.getJulianDay(i);
+                if (day >= delta.getFirstDay() && day <= delta.getLastDay()) {
+                    days.put(day, i);
+                }
+            }
+        }
+        WeatherPayload changes = delta.getDays();
+        for (int i = 0; i < changes.getDayCount(); i++) {
+            days.put(changes.getJulianDay(i), -(i + 1));
+        }
+
+        int count = days.size();
+        int[] julianDays = new int[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : days.entrySet()) {
+            int index = entry.getValue();
+            WeatherPayload source = index >= 0 ? mForecast : changes;
+            if (index < 0) {
+                index = -index - 1;
+            }
+            julianDays[i] = entry.getKey();
+            weatherIds[i] = source.getWeatherId(index);
+            maxTemps[i] = source.getMaxTemp(index);
+            minTemps[i] = source.getMinTemp(index);
+            i++;
+        }
+        // The units are the phone's latest
+        mForecast = new WeatherPayload(changes.isMetric(), julianDays, weatherIds, maxTemps, minTemps);
+        mVersion = delta.getVersion();
+        return APPLIED;
+    }
+}
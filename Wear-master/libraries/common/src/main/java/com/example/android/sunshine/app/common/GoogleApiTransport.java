@@ -0,0 +1,110 @@
+package com.example.android.sunshine.app.common;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WearableTransport} over the Wearable API of Google Play services.
+ */
+public final class GoogleApiTransport implements WearableTransport {
+
+    private static final String LOG_TAG = GoogleApiTransport.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long REQUEST_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long INITIAL_BACKOFF_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static WearableConnection sSharedConnection;
+
+    private final GoogleApiClient mGoogleApiClient;
+
+    /**
+     * @return the connection shared by the whole process
+     */
+    public static synchronized WearableConnection getSharedConnection(Context context) {
+        if (sSharedConnection == null) {
+            sSharedConnection = new WearableConnection(new GoogleApiTransport(context.getApplicationContext()),
+                    CONNECT_TIMEOUT_MS, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS);
+        }
+        return sSharedConnection;
+    }
+
+    private GoogleApiTransport(Context context) {
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    @Override
+    public boolean connect(long timeoutMs) {
+        ConnectionResult result = mGoogleApiClient.blockingConnect(timeoutMs, TimeUnit.MILLISECONDS);
+        if (!result.isSuccess()) {
+            Log.d(LOG_TAG, "connectedFailed GoogleAPI: " + result);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        mGoogleApiClient.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mGoogleApiClient.isConnected();
+    }
+
+    @Override
+    public boolean putString(String path, String key, String value) {
+        PutDataMapRequest request = PutDataMapRequest.create(path);
+        request.getDataMap().putString(key, value);
+        return put(request);
+    }
+
+    @Override
+    public boolean putBytes(String path, String key, byte[] value) {
+        PutDataMapRequest request = PutDataMapRequest.create(path);
+        request.getDataMap().putByteArray(key, value);
+        return put(request);
+    }
+
+    private boolean put(PutDataMapRequest request) {
+        Status status = Wearable.DataApi.putDataItem(mGoogleApiClient, request.asPutDataRequest())
+                .await(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .getStatus();
+        if (!status.isSuccess()) {
+            Log.d(LOG_TAG, "Failed to put " + request.getUri() + ": " + status);
+        }
+        return status.isSuccess();
+    }
+
+    @Override
+    public boolean sendMessage(String path, byte[] data) {
+        NodeApi.GetConnectedNodesResult nodes = Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                .await(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        boolean sent = false;
+        for (Node node : nodes.getNodes()) {
+            Status status = Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(), path, data)
+                    .await(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .getStatus();
+            if (status.isSuccess()) {
+                sent = true;
+            } else {
+                Log.d(LOG_TAG, "Failed to send " + path + " to " + node.getId() + ": " + status);
+            }
+        }
+        return sent;
+    }
+}
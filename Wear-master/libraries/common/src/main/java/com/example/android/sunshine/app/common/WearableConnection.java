@@ -0,0 +1,246 @@
+package com.example.android.sunshine.app.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One connection to the wearable data layer, shared by everything in the process that talks to
+ * the other device.
+ *
+ * Users {@link #acquire()} the connection for as long as they want it kept open and
+ * {@link #release()} it when done; it disconnects once the last user released it and nothing is
+ * left to send.  Requests are queued and run in order on the connection's thread as soon as it
+ * is connected, so nothing is sent on a connection still being made.  A failed connection is
+ * retried after a delay that doubles on every failure, up to a maximum, for as long as anybody
+ * wants the connection.
+ */
+public final class WearableConnection {
+
+    /**
+     * A call to make once connected.
+     */
+    public interface Request {
+        /**
+         * Runs on the connection's thread, so it may block.
+         *
+         * @return whether the call succeeded; a failed request is retried if the connection was
+         * lost, and dropped otherwise
+         */
+        boolean run(WearableTransport transport);
+    }
+
+    private final WearableTransport mTransport;
+    private final long mConnectTimeoutMs;
+    private final long mInitialBackoffMs;
+    private final long mMaxBackoffMs;
+    private final ScheduledExecutorService mExecutor;
+
+    // Guarded by this
+    private int mRefCount;
+    private int mConnectCount;
+    private int mFailedConnectCount;
+
+    // Only touched on the connection's thread
+    private final Deque<Request> mPending = new ArrayDeque<Request>();
+    private int mFailures;
+    private boolean mRetryScheduled;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRetryScheduled = false;
+            flush();
+        }
+    };
+
+    public WearableConnection(WearableTransport transport, long connectTimeoutMs, long initialBackoffMs,
+                              long maxBackoffMs) {
+        mTransport = transport;
+        mConnectTimeoutMs = connectTimeoutMs;
+        mInitialBackoffMs = initialBackoffMs;
+        mMaxBackoffMs = maxBackoffMs;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, WearableConnection.class.getSimpleName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Connects in the background, if not connected already, and keeps the connection open
+     * until a matching {@link #release()}.
+     */
+    public void acquire() {
+        synchronized (this) {
+            if (mRefCount++ > 0) {
+                return;
+            }
+        }
+        mExecutor.execute(mFlushRunnable);
+    }
+
+    public void release() {
+        synchronized (this) {
+            if (mRefCount == 0) {
+                throw new IllegalStateException("Released more often than acquired");
+            }
+            if (--mRefCount > 0) {
+                return;
+            }
+        }
+        mExecutor.execute(mFlushRunnable);
+    }
+
+    /**
+     * Queues the request, to run once connected.
+     */
+    public void submit(final Request request) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mPending.add(request);
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Queues the request and waits for it to run, connecting first if need be.  A request not
+     * run within the timeout is dropped.
+     *
+     * @return whether the request ran and succeeded within the timeout
+     */
+    public boolean execute(final Request request, long timeoutMs) {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        final boolean[] succeeded = new boolean[1];
+        submit(new Request() {
+            @Override
+            public boolean run(WearableTransport transport) {
+                if (timedOut.get()) {
+                    return true;
+                }
+                succeeded[0] = request.run(transport);
+                if (succeeded[0] || transport.isConnected()) {
+                    done.countDown();
+                }
+                return succeeded[0];
+            }
+        });
+        try {
+            if (done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                return succeeded[0];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        timedOut.set(true);
+        return false;
+    }
+
+    // Successful connections made
+    public synchronized int getConnectCount() {
+        return mConnectCount;
+    }
+
+    // Connections that failed or timed out
+    public synchronized int getFailedConnectCount() {
+        return mFailedConnectCount;
+    }
+
+    /**
+     * Waits for the work queued so far on the connection's thread to be done, so tests can
+     * look at the transport.
+     */
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        final CountDownLatch idle = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        return idle.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs the pending requests if there are any, and connects or disconnects as wanted
+    private void flush() {
+        boolean acquired;
+        synchronized (this) {
+            acquired = mRefCount > 0;
+        }
+        if (!acquired && mPending.isEmpty()) {
+            if (mTransport.isConnected()) {
+                mTransport.disconnect();
+            }
+            return;
+        }
+        if (!ensureConnected()) {
+            return;
+        }
+        while (!mPending.isEmpty()) {
+            if (!mPending.peek().run(mTransport) && !mTransport.isConnected()) {
+                // Lost the connection: run the request again once connected again
+                scheduleRetry();
+                return;
+            }
+            mPending.poll();
+        }
+        if (!acquired) {
+            mTransport.disconnect();
+        }
+    }
+
+    private boolean ensureConnected() {
+        if (mTransport.isConnected()) {
+            return true;
+        }
+        if (mTransport.connect(mConnectTimeoutMs)) {
+            mFailures = 0;
+            synchronized (this) {
+                mConnectCount++;
+            }
+            return true;
+        }
+        mFailures++;
+        synchronized (this) {
+            mFailedConnectCount++;
+        }
+        scheduleRetry();
+        return false;
+    }
+
+    private void scheduleRetry() {
+        if (mRetryScheduled) {
+            return;
+        }
+        mRetryScheduled = true;
+        mExecutor.schedule(mRetryRunnable, backoffDelay(mFailures, mInitialBackoffMs, mMaxBackoffMs),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // The delay before trying again after the given number of failures in a row
+    static long backoffDelay(int failures, long initialBackoffMs, long maxBackoffMs) {
+        long delay = initialBackoffMs;
+        for (int i = 1; i < failures && delay < maxBackoffMs; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxBackoffMs);
+    }
+}
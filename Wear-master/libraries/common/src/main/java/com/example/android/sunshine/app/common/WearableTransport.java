@@ -0,0 +1,41 @@
+package com.example.android.sunshine.app.common;
+
+/**
+ * The calls the apps make to the wearable data layer, so a {@link WearableConnection} can run
+ * them over Google Play services on a device and, in the unit tests, over an in-process fake on
+ * a plain JVM.
+ *
+ * Every call blocks, and is only made from the connection's thread.
+ */
+public interface WearableTransport {
+
+    /**
+     * @return whether the transport connected within the timeout
+     */
+    boolean connect(long timeoutMs);
+
+    void disconnect();
+
+    boolean isConnected();
+
+    /**
+     * Replaces the data item at the path with one holding a single string.
+     *
+     * @return whether the item was put
+     */
+    boolean putString(String path, String key, String value);
+
+    /**
+     * Replaces the data item at the path with one holding a single byte array.
+     *
+     * @return whether the item was put
+     */
+    boolean putBytes(String path, String key, byte[] value);
+
+    /**
+     * Sends a message to every connected node.
+     *
+     * @return whether any node got it
+     */
+    boolean sendMessage(String path, byte[] data);
+}
@@ -0,0 +1,298 @@
+package com.example.android.sunshine.app.common;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the phone and the watch show for an OpenWeatherMap condition code: the icon, the art,
+ * the description, and the name of the art in the art packs and the photo of the condition.
+ *
+ * Every code from {@link #MIN_CODE} to {@link #MAX_CODE} has an entry in an array indexed by
+ * the code, built once, so a lookup is an array read rather than a chain of range checks.
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int MIN_CODE = 200;
+    public static final int MAX_CODE = 962;
+
+    // The kinds of art, indexing the icons, the art and the art names
+    private static final int NO_ART = -1;
+    private static final int ART_STORM = 0;
+    private static final int ART_LIGHT_RAIN = 1;
+    private static final int ART_RAIN = 2;
+    private static final int ART_SNOW = 3;
+    private static final int ART_FOG = 4;
+    private static final int ART_CLEAR = 5;
+    private static final int ART_LIGHT_CLOUDS = 6;
+    private static final int ART_CLOUDS = 7;
+
+    private static final int[] ICON_RESOURCES = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    private static final int[] ART_RESOURCES = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
+
+    // The art's name in the URLs of the art packs
+    private static final String[] ART_NAMES = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    private static final String IMAGE_STORM = "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
+    private static final String IMAGE_LIGHT_RAIN = "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
+    private static final String IMAGE_RAIN = "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+    private static final String IMAGE_SNOW = "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+    private static final String IMAGE_FOG = "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
+    private static final String IMAGE_DUST = "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+    private static final String IMAGE_CLEAR = "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
+    private static final String IMAGE_LIGHT_CLOUDS = "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
+    private static final String IMAGE_CLOUDS = "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
+
+    /**
+     * The entry of one code.  Codes OpenWeatherMap doesn't define inside a range that has art,
+     * 205 say, get the range's art but no description.
+     */
+    private static final class Entry {
+        final int mArt;
+        final int mIconResource;
+        final int mArtResource;
+        final String mArtName;
+        // 0 if there is none
+        final int mDescriptionResource;
+        final String mImageUrl;
+
+        Entry(int art, int descriptionResource, String imageUrl) {
+            mArt = art;
+            mIconResource = art != NO_ART ? ICON_RESOURCES[art] : -1;
+            mArtResource = art != NO_ART ? ART_RESOURCES[art] : -1;
+            mArtName = art != NO_ART ? ART_NAMES[art] : null;
+            mDescriptionResource = descriptionResource;
+            mImageUrl = imageUrl;
+        }
+    }
+
+    private static final Entry[] ENTRIES = new Entry[MAX_CODE - MIN_CODE + 1];
+
+    // Art packs by URL format
+    private static final ConcurrentHashMap<String, ArtPack> sArtPacks = new ConcurrentHashMap<String, ArtPack>();
+
+    // Only used while the entries are built
+    private static int[] sArts;
+    private static int[] sDescriptions;
+    private static String[] sImages;
+
+    static {
+        sArts = new int[ENTRIES.length];
+        sDescriptions = new int[ENTRIES.length];
+        sImages = new String[ENTRIES.length];
+        for (int i = 0; i < ENTRIES.length; i++) {
+            sArts[i] = NO_ART;
+        }
+
+        art(200, 232, ART_STORM, IMAGE_STORM);
+        art(300, 321, ART_LIGHT_RAIN, IMAGE_LIGHT_RAIN);
+        art(500, 504, ART_RAIN, IMAGE_RAIN);
+        art(511, 511, ART_SNOW, IMAGE_SNOW);
+        art(520, 531, ART_RAIN, IMAGE_RAIN);
+        art(600, 622, ART_SNOW, IMAGE_SNOW);
+        art(701, 761, ART_FOG, IMAGE_FOG);
+        art(781, 781, ART_STORM, IMAGE_DUST);
+        art(800, 800, ART_CLEAR, IMAGE_CLEAR);
+        art(801, 801, ART_LIGHT_CLOUDS, IMAGE_LIGHT_CLOUDS);
+        art(802, 804, ART_CLOUDS, IMAGE_CLOUDS);
+
+        describe(200, 232, R.string.condition_2xx);
+        describe(300, 321, R.string.condition_3xx);
+        describe(500, R.string.condition_500);
+        describe(501, R.string.condition_501);
+        describe(502, R.string.condition_502);
+        describe(503, R.string.condition_503);
+        describe(504, R.string.condition_504);
+        describe(511, R.string.condition_511);
+        describe(520, R.string.condition_520);
+        describe(521, R.string.condition_521);
+        describe(522, R.string.condition_522);
+        describe(531, R.string.condition_531);
+        describe(600, R.string.condition_600);
+        describe(601, R.string.condition_601);
+        describe(602, R.string.condition_602);
+        describe(611, R.string.condition_611);
+        describe(612, R.string.condition_612);
+        describe(615, R.string.condition_615);
+        describe(616, R.string.condition_616);
+        describe(620, R.string.condition_620);
+        describe(621, R.string.condition_621);
+        describe(622, R.string.condition_622);
+        describe(701, R.string.condition_701);
+        describe(711, R.string.condition_711);
+        describe(721, R.string.condition_721);
+        describe(731, R.string.condition_731);
+        describe(741, R.string.condition_741);
+        describe(751, R.string.condition_751);
+        describe(761, R.string.condition_761);
+        describe(762, R.string.condition_762);
+        describe(771, R.string.condition_771);
+        describe(781, R.string.condition_781);
+        describe(800, R.string.condition_800);
+        describe(801, R.string.condition_801);
+        describe(802, R.string.condition_802);
+        describe(803, R.string.condition_803);
+        describe(804, R.string.condition_804);
+        describe(900, R.string.condition_900);
+        describe(901, R.string.condition_901);
+        describe(902, R.string.condition_902);
+        describe(903, R.string.condition_903);
+        describe(904, R.string.condition_904);
+        describe(905, R.string.condition_905);
+        describe(906, R.string.condition_906);
+        describe(951, R.string.condition_951);
+        describe(952, R.string.condition_952);
+        describe(953, R.string.condition_953);
+        describe(954, R.string.condition_954);
+        describe(955, R.string.condition_955);
+        describe(956, R.string.condition_956);
+        describe(957, R.string.condition_957);
+        describe(958, R.string.condition_958);
+        describe(959, R.string.condition_959);
+        describe(960, R.string.condition_960);
+        describe(961, R.string.condition_961);
+        describe(962, R.string.condition_962);
+
+        for (int i = 0; i < ENTRIES.length; i++) {
+            if (sArts[i] != NO_ART || sDescriptions[i] != 0) {
+                ENTRIES[i] = new Entry(sArts[i], sDescriptions[i], sImages[i]);
+            }
+        }
+        sArts = null;
+        sDescriptions = null;
+        sImages = null;
+    }
+
+    private static void art(int firstCode, int lastCode, int art, String imageUrl) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            sArts[code - MIN_CODE] = art;
+            sImages[code - MIN_CODE] = imageUrl;
+        }
+    }
+
+    private static void describe(int firstCode, int lastCode, int descriptionResource) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            sDescriptions[code - MIN_CODE] = descriptionResource;
+        }
+    }
+
+    private static void describe(int code, int descriptionResource) {
+        describe(code, code, descriptionResource);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static Entry entry(int weatherId) {
+        if (weatherId < MIN_CODE || weatherId > MAX_CODE) {
+            return null;
+        }
+        return ENTRIES[weatherId - MIN_CODE];
+    }
+
+    /**
+     * @return the drawable of the condition's icon, -1 if there is none
+     */
+    public static int getIconResource(int weatherId) {
+        Entry entry = entry(weatherId);
+        return entry != null ? entry.mIconResource : -1;
+    }
+
+    /**
+     * @return the drawable of the condition's art, -1 if there is none
+     */
+    public static int getArtResource(int weatherId) {
+        Entry entry = entry(weatherId);
+        return entry != null ? entry.mArtResource : -1;
+    }
+
+    /**
+     * @return the name of the condition's art in the art packs, null if there is none
+     */
+    public static String getArtName(int weatherId) {
+        Entry entry = entry(weatherId);
+        return entry != null ? entry.mArtName : null;
+    }
+
+    /**
+     * @return the string describing the condition, 0 if there is none
+     */
+    public static int getDescriptionResource(int weatherId) {
+        Entry entry = entry(weatherId);
+        return entry != null ? entry.mDescriptionResource : 0;
+    }
+
+    /**
+     * @return the URL of a photo of the condition, null if there is none
+     */
+    public static String getImageUrl(int weatherId) {
+        Entry entry = entry(weatherId);
+        return entry != null ? entry.mImageUrl : null;
+    }
+
+    /**
+     * @param urlFormat the URL format of the art pack, with the art name as its argument
+     * @return the art pack, with its URLs formatted the first time it was asked for
+     */
+    public static ArtPack getArtPack(String urlFormat) {
+        ArtPack artPack = sArtPacks.get(urlFormat);
+        if (artPack == null) {
+            artPack = new ArtPack(urlFormat);
+            ArtPack previous = sArtPacks.putIfAbsent(urlFormat, artPack);
+            if (previous != null) {
+                artPack = previous;
+            }
+        }
+        return artPack;
+    }
+
+    /**
+     * The URLs of the art of an art pack, formatted once for every kind of art.
+     */
+    public static final class ArtPack {
+        private final String[] mUrls = new String[ART_NAMES.length];
+
+        private ArtPack(String urlFormat) {
+            for (int art = 0; art < ART_NAMES.length; art++) {
+                mUrls[art] = String.format(Locale.US, urlFormat, ART_NAMES[art]);
+            }
+        }
+
+        /**
+         * @return the URL of the condition's art, null if there is none
+         */
+        public String getUrl(int weatherId) {
+            Entry entry = entry(weatherId);
+            return entry != null && entry.mArt != NO_ART ? mUrls[entry.mArt] : null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.android.sunshine.app.common;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * A forecast of several days as the phone sends it to the watch, in a compact binary form.
+ *
+ * The encoding, big-endian, is a header of version (byte), flags (byte), the Julian day of the
+ * first day (int) and the number of days (byte), then seven bytes a day: its offset in days
+ * from the first (byte), its OpenWeatherMap condition (short) and its high and low in tenths of
+ * a degree Celsius (short each), and last a CRC32 of everything before it (int).  A week is 60
+ * bytes.  Temperatures travel in Celsius with a flag telling whether to show them in Celsius or
+ * Fahrenheit, the way the phone stores them.
+ */
+public final class WeatherPayload {
+
+    public static final int VERSION = 1;
+
+    private static final int FLAG_METRIC = 1;
+    private static final int HEADER_SIZE = 7;
+    private static final int DAY_SIZE = 7;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MAX_DAYS = 255;
+    private static final double FIXED_POINT_SCALE = 10.0;
+
+    private final boolean mMetric;
+    private final int[] mJulianDays;
+    private final int[] mWeatherIds;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+
+    /**
+     * @param julianDays the days in ascending order, spanning at most 255 days
+     * @param maxTemps   in degrees Celsius, kept to a tenth of a degree
+     * @param minTemps   in degrees Celsius, kept to a tenth of a degree
+     */
+    public WeatherPayload(boolean metric, int[] julianDays, int[] weatherIds, double[] maxTemps, double[] minTemps) {
+        int count = julianDays.length;
+        if (weatherIds.length != count || maxTemps.length != count || minTemps.length != count) {
+            throw new IllegalArgumentException("Days and values do not match");
+        }
+        if (count > MAX_DAYS) {
+            throw new IllegalArgumentException("Too many days: " + count);
+        }
+        for (int i = 1; i < count; i++) {
+            if (julianDays[i] <= julianDays[i - 1] || julianDays[i] - julianDays[0] > MAX_DAYS) {
+                throw new IllegalArgumentException("Days out of order or too far apart: " + julianDays[i]);
+            }
+        }
+        mMetric = metric;
+        mJulianDays = julianDays;
+        mWeatherIds = weatherIds;
+        mMaxTemps = maxTemps;
+        mMinTemps = minTemps;
+    }
+
+    public byte[] toByteArray() {
+        int count = mJulianDays.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * DAY_SIZE + CHECKSUM_SIZE);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (mMetric ? FLAG_METRIC : 0));
+        buffer.putInt(count > 0 ? mJulianDays[0] : 0);
+        buffer.put((byte) count);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) (mJulianDays[i] - mJulianDays[0]));
+            buffer.putShort((short) mWeatherIds[i]);
+            buffer.putShort(toFixedPoint(mMaxTemps[i]));
+            buffer.putShort(toFixedPoint(mMinTemps[i]));
+        }
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are of another version, truncated or
+     *                                  corrupt
+     */
+    public static WeatherPayload fromByteArray(byte[] bytes) {
+        if (bytes.length < HEADER_SIZE + CHECKSUM_SIZE) {
+            throw new IllegalArgumentException("Payload too short: " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown payload version: " + version);
+        }
+        int length = bytes.length - CHECKSUM_SIZE;
+        if (checksum(bytes, length) != ByteBuffer.wrap(bytes, length, CHECKSUM_SIZE).getInt()) {
+            throw new IllegalArgumentException("Payload checksum mismatch");
+        }
+        try {
+            boolean metric = (buffer.get() & FLAG_METRIC) != 0;
+            int firstJulianDay = buffer.getInt();
+            int count = buffer.get() & 0xff;
+            int[] julianDays = new int[count];
+            int[] weatherIds = new int[count];
+            double[] maxTemps = new double[count];
+            double[] minTemps = new double[count];
+            for (int i = 0; i < count; i++) {
+                julianDays[i] = firstJulianDay + (buffer.get() & 0xff);
+                weatherIds[i] = buffer.getShort();
+                maxTemps[i] = buffer.getShort() / FIXED_POINT_SCALE;
+                minTemps[i] = buffer.getShort() / FIXED_POINT_SCALE;
+            }
+            return new WeatherPayload(metric, julianDays, weatherIds, maxTemps, minTemps);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Payload truncated", e);
+        }
+    }
+
+    // Whether temperatures are shown in Celsius rather than Fahrenheit
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public int getDayCount() {
+        return mJulianDays.length;
+    }
+
+    /**
+     * @return the index of the day, or -1 if the payload has no forecast for it
+     */
+    public int indexOfJulianDay(int julianDay) {
+        for (int i = 0; i < mJulianDays.length; i++) {
+            if (mJulianDays[i] == julianDay) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getJulianDay(int index) {
+        return mJulianDays[index];
+    }
+
+    public int getWeatherId(int index) {
+        return mWeatherIds[index];
+    }
+
+    // In degrees Celsius
+    public double getMaxTemp(int index) {
+        return mMaxTemps[index];
+    }
+
+    // In degrees Celsius
+    public double getMinTemp(int index) {
+        return mMinTemps[index];
+    }
+
+    /**
+     * @return the temperature in the units the payload says to show it in
+     */
+    public double toDisplayUnits(double celsius) {
+        return mMetric ? celsius : (celsius * 1.8) + 32;
+    }
+
+    private static short toFixedPoint(double celsius) {
+        return (short) Math.round(celsius * FIXED_POINT_SCALE);
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
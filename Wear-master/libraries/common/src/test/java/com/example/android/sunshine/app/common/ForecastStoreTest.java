@@ -0,0 +1,102 @@
+package com.example.android.sunshine.app.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ForecastStoreTest {
+
+    private static final int FIRST_DAY = 2457696;
+
+    // Days from the first day on, all with the same weather
+    private static WeatherPayload createDays(int firstDay, int count, double maxTemp) {
+        int[] julianDays = new int[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        for (int i = 0; i < count; i++) {
+            julianDays[i] = firstDay + i;
+            weatherIds[i] = 800;
+            maxTemps[i] = maxTemp;
+            minTemps[i] = 12;
+        }
+        return new WeatherPayload(true, julianDays, weatherIds, maxTemps, minTemps);
+    }
+
+    private static ForecastStore createWeekAtVersion1() {
+        ForecastStore store = new ForecastStore();
+        assertEquals(ForecastStore.APPLIED, store.apply(
+                new ForecastDelta(0, 1, FIRST_DAY, FIRST_DAY + 6, createDays(FIRST_DAY, 7, 21))));
+        return store;
+    }
+
+    @Test
+    public void deltaRoundTrip() throws Exception {
+        ForecastDelta delta = new ForecastDelta(3, 5, FIRST_DAY, FIRST_DAY + 6, createDays(FIRST_DAY + 2, 2, 25));
+        ForecastDelta decoded = ForecastDelta.fromByteArray(delta.toByteArray());
+        assertEquals(3, decoded.getBaseVersion());
+        assertEquals(5, decoded.getVersion());
+        assertFalse(decoded.isFull());
+        assertEquals(FIRST_DAY, decoded.getFirstDay());
+        assertEquals(FIRST_DAY + 6, decoded.getLastDay());
+        assertEquals(2, decoded.getDays().getDayCount());
+        assertEquals(FIRST_DAY + 3, decoded.getDays().getJulianDay(1));
+
+        assertEquals(42L, ForecastDelta.decodeVersion(ForecastDelta.encodeVersion(42)));
+    }
+
+    @Test
+    public void appliesChangedDays() throws Exception {
+        ForecastStore store = createWeekAtVersion1();
+        ForecastDelta delta = new ForecastDelta(1, 2, FIRST_DAY, FIRST_DAY + 6, createDays(FIRST_DAY + 3, 1, 25));
+
+        assertEquals(ForecastStore.APPLIED, store.apply(delta));
+        assertEquals(2, store.getVersion());
+        WeatherPayload forecast = store.getForecast();
+        assertEquals(7, forecast.getDayCount());
+        assertEquals(21, forecast.getMaxTemp(2), 0.001);
+        assertEquals(25, forecast.getMaxTemp(3), 0.001);
+
+        assertEquals("The same delta again should change nothing", ForecastStore.STALE, store.apply(delta));
+        assertEquals(2, store.getVersion());
+    }
+
+    @Test
+    public void dropsDaysOutOfTheForecast() throws Exception {
+        ForecastStore store = createWeekAtVersion1();
+        // A day later, the forecast lost its first day and gained one at the end
+        ForecastDelta delta = new ForecastDelta(1, 2, FIRST_DAY + 1, FIRST_DAY + 7, createDays(FIRST_DAY + 7, 1, 25));
+
+        assertEquals(ForecastStore.APPLIED, store.apply(delta));
+        WeatherPayload forecast = store.getForecast();
+        assertEquals(7, forecast.getDayCount());
+        assertEquals(FIRST_DAY + 1, forecast.getJulianDay(0));
+        assertEquals(FIRST_DAY + 7, forecast.getJulianDay(6));
+        assertEquals(-1, forecast.indexOfJulianDay(FIRST_DAY));
+    }
+
+    @Test
+    public void reportsMissedDeltas() throws Exception {
+        ForecastStore store = createWeekAtVersion1();
+        ForecastDelta delta = new ForecastDelta(2, 3, FIRST_DAY, FIRST_DAY + 6, createDays(FIRST_DAY, 1, 25));
+
+        assertEquals(ForecastStore.GAP, store.apply(delta));
+        assertEquals(1, store.getVersion());
+        assertEquals(21, store.getForecast().getMaxTemp(0), 0.001);
+    }
+
+    @Test
+    public void fullDeltaReplacesTheStore() throws Exception {
+        ForecastStore store = createWeekAtVersion1();
+        store.apply(new ForecastDelta(1, 9, FIRST_DAY, FIRST_DAY + 6, createDays(FIRST_DAY, 1, 25)));
+
+        // The phone started its versions over
+        ForecastDelta delta = new ForecastDelta(0, 1, FIRST_DAY + 2, FIRST_DAY + 4, createDays(FIRST_DAY + 2, 3, 30));
+        assertEquals(ForecastStore.APPLIED, store.apply(delta));
+        assertEquals(1, store.getVersion());
+        WeatherPayload forecast = store.getForecast();
+        assertEquals(3, forecast.getDayCount());
+        assertEquals(FIRST_DAY + 2, forecast.getJulianDay(0));
+        assertEquals(30, forecast.getMaxTemp(0), 0.001);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.sunshine.app.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link WearableTransport} that hands what is sent straight to a listener in the same
+ * process, for exercising the phone to watch pipeline in the unit tests.
+ *
+ * Like the data layer, putting a data item identical to the one already at its path does not
+ * notify the listener.  Connections can be made to fail and the other device to go away, and
+ * the bytes sent are counted.  Thread safe.
+ */
+public final class LocalWearableTransport implements WearableTransport {
+
+    /**
+     * The other device.  Called on the thread of the call that sent the data.
+     */
+    public interface Listener {
+        void onDataChanged(String path, String key, byte[] value);
+
+        void onMessageReceived(String path, byte[] data);
+    }
+
+    private final Listener mListener;
+
+    // Guarded by this
+    private boolean mConnected;
+    private boolean mReachable = true;
+    private int mConnectFailures;
+    private long mBytesSent;
+    private int mDataItemsPut;
+    private int mMessagesSent;
+    private final Map<String, byte[]> mDataItems = new HashMap<String, byte[]>();
+
+    public LocalWearableTransport(Listener listener) {
+        mListener = listener;
+    }
+
+    // Makes the next connections fail
+    public synchronized void failConnects(int count) {
+        mConnectFailures = count;
+    }
+
+    // Whether the other device is around; while not, nothing reaches it
+    public synchronized void setReachable(boolean reachable) {
+        mReachable = reachable;
+    }
+
+    // Bytes of the data items and messages that reached the other device
+    public synchronized long getBytesSent() {
+        return mBytesSent;
+    }
+
+    public synchronized int getDataItemsPut() {
+        return mDataItemsPut;
+    }
+
+    public synchronized int getMessagesSent() {
+        return mMessagesSent;
+    }
+
+    @Override
+    public synchronized boolean connect(long timeoutMs) {
+        if (mConnectFailures > 0) {
+            mConnectFailures--;
+            return false;
+        }
+        mConnected = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        mConnected = false;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return mConnected;
+    }
+
+    @Override
+    public boolean putString(String path, String key, String value) {
+        return putBytes(path, key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean putBytes(String path, String key, byte[] value) {
+        synchronized (this) {
+            if (!mConnected) {
+                return false;
+            }
+            byte[] item = mDataItems.get(path + '\u0000' + key);
+            if (Arrays.equals(item, value)) {
+                return true;
+            }
+            mDataItems.put(path + '\u0000' + key, value);
+            mDataItemsPut++;
+            if (!mReachable) {
+                // Put, but never seen by the other device, as with an item replaced before it came back
+                return true;
+            }
+            mBytesSent += value.length;
+        }
+        mListener.onDataChanged(path, key, value);
+        return true;
+    }
+
+    @Override
+    public boolean sendMessage(String path, byte[] data) {
+        synchronized (this) {
+            if (!mConnected || !mReachable) {
+                return false;
+            }
+            mMessagesSent++;
+            mBytesSent += data.length;
+        }
+        mListener.onMessageReceived(path, data);
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.android.sunshine.app.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WearableConnectionTest {
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final int FIRST_DAY = 2457696;
+
+    private final List<String> mReceived = new ArrayList<String>();
+
+    private final LocalWearableTransport.Listener mListener = new LocalWearableTransport.Listener() {
+        @Override
+        public void onDataChanged(String path, String key, byte[] value) {
+            synchronized (mReceived) {
+                mReceived.add(path);
+            }
+        }
+
+        @Override
+        public void onMessageReceived(String path, byte[] data) {
+            synchronized (mReceived) {
+                mReceived.add(path);
+            }
+        }
+    };
+
+    private static WearableConnection.Request put(final String path) {
+        return new WearableConnection.Request() {
+            @Override
+            public boolean run(WearableTransport transport) {
+                return transport.putBytes(path, "key", new byte[]{1});
+            }
+        };
+    }
+
+    @Test
+    public void backoffDoublesUpToTheMaximum() throws Exception {
+        assertEquals(100, WearableConnection.backoffDelay(1, 100, 1000));
+        assertEquals(200, WearableConnection.backoffDelay(2, 100, 1000));
+        assertEquals(800, WearableConnection.backoffDelay(4, 100, 1000));
+        assertEquals(1000, WearableConnection.backoffDelay(5, 100, 1000));
+        assertEquals(1000, WearableConnection.backoffDelay(Integer.MAX_VALUE, 100, 1000));
+    }
+
+    @Test
+    public void queuedRequestsRunInOrderOnceConnected() throws Exception {
+        LocalWearableTransport transport = new LocalWearableTransport(mListener);
+        transport.failConnects(2);
+        // Backing off for longer than the test takes, so the third request is the one that
+        // connects. A retry connecting first would send the first two, disconnect, and connect
+        // again for the third.
+        WearableConnection connection = new WearableConnection(transport, 0, TIMEOUT_MS, TIMEOUT_MS);
+
+        connection.submit(put("/first"));
+        connection.submit(put("/second"));
+        assertTrue(connection.execute(put("/third"), TIMEOUT_MS));
+
+        assertEquals(2, connection.getFailedConnectCount());
+        assertEquals(1, connection.getConnectCount());
+        synchronized (mReceived) {
+            assertEquals("[/first, /second, /third]", mReceived.toString());
+        }
+        // Nobody acquired the connection, so it closes once the requests are sent
+        assertTrue(connection.awaitIdle(TIMEOUT_MS));
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    public void sharedConnectionClosesAfterTheLastRelease() throws Exception {
+        LocalWearableTransport transport = new LocalWearableTransport(mListener);
+        WearableConnection connection = new WearableConnection(transport, 0, 1, 10);
+
+        connection.acquire();
+        connection.acquire();
+        assertTrue(connection.execute(put("/item"), TIMEOUT_MS));
+        connection.release();
+        assertTrue(connection.awaitIdle(TIMEOUT_MS));
+        assertTrue(transport.isConnected());
+
+        connection.release();
+        assertTrue(connection.awaitIdle(TIMEOUT_MS));
+        assertFalse(transport.isConnected());
+        assertEquals("One connection should serve both users", 1, connection.getConnectCount());
+    }
+
+    private static WearableConnection.Request putDelta(final ForecastDelta delta) {
+        return new WearableConnection.Request() {
+            @Override
+            public boolean run(WearableTransport transport) {
+                return transport.putBytes(Constants.WEATHER_DELTA_PATH, Constants.WEATHER_KEY_DELTA, delta.toByteArray());
+            }
+        };
+    }
+
+    /**
+     * Sends a month of forecast updates, eight a day, as deltas to a watch side store over a
+     * transport that loses a fifth of them, the way a watch out of range misses them.  A watch
+     * that finds it missed a delta asks for the whole forecast.  The watch has to end up with
+     * the phone's forecast, for fewer bytes than sending the whole forecast every time.
+     */
+    @Test
+    public void deltaSyncLoad() throws Exception {
+        final ForecastStore watch = new ForecastStore();
+        final boolean[] resyncRequested = new boolean[1];
+        final LocalWearableTransport transport = new LocalWearableTransport(new LocalWearableTransport.Listener() {
+            @Override
+            public void onDataChanged(String path, String key, byte[] value) {
+                if (watch.apply(ForecastDelta.fromByteArray(value)) == ForecastStore.GAP) {
+                    resyncRequested[0] = true;
+                }
+            }
+
+            @Override
+            public void onMessageReceived(String path, byte[] data) {
+            }
+        });
+        WearableConnection connection = new WearableConnection(transport, 0, 1, 10);
+        connection.acquire();
+
+        Random random = new Random(42);
+        WeatherPayload forecast = null;
+        long version = 0;
+        long fullBytes = 0;
+        int resyncs = 0;
+        for (int update = 0; update < 30 * 8; update++) {
+            int firstDay = FIRST_DAY + update / 8;
+            WeatherPayload previous = forecast;
+            forecast = createForecast(random, firstDay, previous);
+            fullBytes += forecast.toByteArray().length;
+            version++;
+            transport.setReachable(random.nextInt(5) != 0);
+            assertTrue(connection.execute(putDelta(new ForecastDelta(version - 1, version, firstDay, firstDay + 13,
+                    changedDays(forecast, previous))), TIMEOUT_MS));
+            transport.setReachable(true);
+            if (resyncRequested[0]) {
+                resyncRequested[0] = false;
+                resyncs++;
+                assertTrue(connection.execute(putDelta(new ForecastDelta(0, version, firstDay, firstDay + 13,
+                        forecast)), TIMEOUT_MS));
+            }
+        }
+        if (watch.getVersion() != version) {
+            // The last delta was lost: the watch gets everything when it next connects
+            assertTrue(connection.execute(putDelta(new ForecastDelta(0, version, forecast.getJulianDay(0),
+                    forecast.getJulianDay(13), forecast)), TIMEOUT_MS));
+        }
+        connection.release();
+
+        assertEquals(version, watch.getVersion());
+        assertArrayEquals(forecast.toByteArray(), watch.getForecast().toByteArray());
+        assertTrue("Some deltas should have been lost", resyncs > 0);
+        assertEquals(1, connection.getConnectCount());
+        assertTrue("Deltas took " + transport.getBytesSent() + " bytes, the whole forecast " + fullBytes,
+                transport.getBytesSent() < fullBytes);
+    }
+
+    // The days of the forecast that are new or differ from the previous one
+    private static WeatherPayload changedDays(WeatherPayload forecast, WeatherPayload previous) {
+        List<Integer> changed = new ArrayList<Integer>();
+        for (int i = 0; i < forecast.getDayCount(); i++) {
+            int old = previous != null ? previous.indexOfJulianDay(forecast.getJulianDay(i)) : -1;
+            if (old == -1 || forecast.getWeatherId(i) != previous.getWeatherId(old)
+                    || forecast.getMaxTemp(i) != previous.getMaxTemp(old)
+                    || forecast.getMinTemp(i) != previous.getMinTemp(old)) {
+                changed.add(i);
+            }
+        }
+        int[] julianDays = new int[changed.size()];
+        int[] weatherIds = new int[changed.size()];
+        double[] maxTemps = new double[changed.size()];
+        double[] minTemps = new double[changed.size()];
+        for (int i = 0; i < julianDays.length; i++) {
+            int day = changed.get(i);
+            julianDays[i] = forecast.getJulianDay(day);
+            weatherIds[i] = forecast.getWeatherId(day);
+            maxTemps[i] = forecast.getMaxTemp(day);
+            minTemps[i] = forecast.getMinTemp(day);
+        }
+        return new WeatherPayload(true, julianDays, weatherIds, maxTemps, minTemps);
+    }
+
+    // Two weeks from the first day, a few of them changed from the previous forecast
+    private static WeatherPayload createForecast(Random random, int firstDay, WeatherPayload previous) {
+        int[] julianDays = new int[14];
+        int[] weatherIds = new int[14];
+        double[] maxTemps = new double[14];
+        double[] minTemps = new double[14];
+        for (int i = 0; i < 14; i++) {
+            julianDays[i] = firstDay + i;
+            int old = previous != null ? previous.indexOfJulianDay(julianDays[i]) : -1;
+            if (old != -1 && random.nextInt(4) != 0) {
+                weatherIds[i] = previous.getWeatherId(old);
+                maxTemps[i] = previous.getMaxTemp(old);
+                minTemps[i] = previous.getMinTemp(old);
+            } else {
+                weatherIds[i] = 800 + random.nextInt(4);
+                maxTemps[i] = 15 + random.nextInt(100) / 10.0;
+                minTemps[i] = 5 + random.nextInt(100) / 10.0;
+            }
+        }
+        return new WeatherPayload(true, julianDays, weatherIds, maxTemps, minTemps);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.android.sunshine.app.common;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class WeatherConditionsTest {
+
+    private static final String ART_PACK = "https://example.com/art_%s.png";
+
+    // Every code OpenWeatherMap sends, plus a few inside ranges that it doesn't
+    private static final int[] CODES = {
+            200, 201, 202, 205, 210, 211, 212, 221, 230, 231, 232,
+            300, 301, 302, 310, 311, 312, 313, 314, 321,
+            500, 501, 502, 503, 504, 511, 520, 521, 522, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962
+    };
+
+    @Test
+    public void tableMatchesTheChains() throws Exception {
+        for (int code = -1; code <= 1000; code++) {
+            String message = "Code " + code;
+            assertEquals(message, iconChain(code), WeatherConditions.getIconResource(code));
+            assertEquals(message, artChain(code), WeatherConditions.getArtResource(code));
+            assertEquals(message, artNameChain(code), WeatherConditions.getArtName(code));
+            assertEquals(message, imageChain(code), WeatherConditions.getImageUrl(code));
+            String artName = artNameChain(code);
+            assertEquals(message, artName != null ? String.format(Locale.US, ART_PACK, artName) : null,
+                    WeatherConditions.getArtPack(ART_PACK).getUrl(code));
+        }
+    }
+
+    @Test
+    public void descriptions() throws Exception {
+        assertEquals(R.string.condition_2xx, WeatherConditions.getDescriptionResource(200));
+        assertEquals(R.string.condition_2xx, WeatherConditions.getDescriptionResource(205));
+        assertEquals(R.string.condition_3xx, WeatherConditions.getDescriptionResource(321));
+        assertEquals(R.string.condition_521, WeatherConditions.getDescriptionResource(521));
+        assertEquals(R.string.condition_781, WeatherConditions.getDescriptionResource(781));
+        assertEquals(R.string.condition_962, WeatherConditions.getDescriptionResource(962));
+        // Rain, but not a code OpenWeatherMap describes
+        assertEquals(0, WeatherConditions.getDescriptionResource(505));
+        assertEquals(0, WeatherConditions.getDescriptionResource(199));
+        assertEquals(0, WeatherConditions.getDescriptionResource(963));
+    }
+
+    @Test
+    public void artPackIsFormattedOnce() throws Exception {
+        WeatherConditions.ArtPack artPack = WeatherConditions.getArtPack(ART_PACK);
+        assertSame(artPack, WeatherConditions.getArtPack(new String(ART_PACK)));
+        assertSame(artPack.getUrl(500), artPack.getUrl(531));
+    }
+
+    /**
+     * Looks up what a forecast row shows, its icon, its art and its art pack URL, for every
+     * code in turn, with the chains and with the table.
+     */
+    @Test
+    public void lookupBenchmark() throws Exception {
+        final int rounds = 20000;
+        long sink = 0;
+        // Warm up both, so neither pays for the compiler
+        sink += lookUpWithChains(rounds / 10) + lookUpWithTable(rounds / 10);
+
+        long start = System.nanoTime();
+        sink += lookUpWithChains(rounds);
+        long chainNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += lookUpWithTable(rounds);
+        long tableNanos = System.nanoTime() - start;
+
+        long lookups = (long) rounds * CODES.length;
+        System.out.println(String.format(Locale.US, "%d lookups: chains %.1f ns, table %.1f ns each (%d)",
+                lookups, (double) chainNanos / lookups, (double) tableNanos / lookups, sink));
+    }
+
+    private static long lookUpWithChains(int rounds) {
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int code : CODES) {
+                sink += iconChain(code) + artChain(code);
+                String artName = artNameChain(code);
+                if (artName != null) {
+                    sink += String.format(Locale.US, ART_PACK, artName).length();
+                }
+            }
+        }
+        return sink;
+    }
+
+    private static long lookUpWithTable(int rounds) {
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            WeatherConditions.ArtPack artPack = WeatherConditions.getArtPack(ART_PACK);
+            for (int code : CODES) {
+                sink += WeatherConditions.getIconResource(code) + WeatherConditions.getArtResource(code);
+                String artUrl = artPack.getUrl(code);
+                if (artUrl != null) {
+                    sink += artUrl.length();
+                }
+            }
+        }
+        return sink;
+    }
+
+    // The chains the table replaced, from Utility
+
+    private static int iconChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    private static int artChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+
+    private static String artNameChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    private static String imageChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        } else if (weatherId == 511) {
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+        } else if (weatherId == 800) {
+            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
+        } else if (weatherId == 801) {
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
+        }
+        return null;
+    }
+}
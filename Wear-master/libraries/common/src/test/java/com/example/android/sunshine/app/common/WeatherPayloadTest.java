@@ -0,0 +1,75 @@
+package com.example.android.sunshine.app.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeatherPayloadTest {
+
+    private static final int FIRST_DAY = 2457696;
+
+    private static WeatherPayload createWeek() {
+        int[] julianDays = new int[7];
+        int[] weatherIds = new int[7];
+        double[] maxTemps = new double[7];
+        double[] minTemps = new double[7];
+        for (int i = 0; i < julianDays.length; i++) {
+            julianDays[i] = FIRST_DAY + i;
+            weatherIds[i] = 800 + i;
+            maxTemps[i] = 21.44 + i;
+            minTemps[i] = -3.46 - i;
+        }
+        return new WeatherPayload(false, julianDays, weatherIds, maxTemps, minTemps);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        byte[] bytes = createWeek().toByteArray();
+        assertEquals("A week should take 7 bytes of header, 7 a day and 4 of checksum", 60, bytes.length);
+
+        WeatherPayload payload = WeatherPayload.fromByteArray(bytes);
+        assertFalse(payload.isMetric());
+        assertEquals(7, payload.getDayCount());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(FIRST_DAY + i, payload.getJulianDay(i));
+            assertEquals(800 + i, payload.getWeatherId(i));
+            assertEquals(21.4 + i, payload.getMaxTemp(i), 0.001);
+            assertEquals(-3.5 - i, payload.getMinTemp(i), 0.001);
+        }
+        assertEquals(3, payload.indexOfJulianDay(FIRST_DAY + 3));
+        assertEquals(-1, payload.indexOfJulianDay(FIRST_DAY - 1));
+        assertEquals(70.52, payload.toDisplayUnits(payload.getMaxTemp(0)), 0.001);
+    }
+
+    @Test
+    public void emptyForecast() throws Exception {
+        WeatherPayload payload = new WeatherPayload(true, new int[0], new int[0], new double[0], new double[0]);
+        WeatherPayload decoded = WeatherPayload.fromByteArray(payload.toByteArray());
+        assertTrue(decoded.isMetric());
+        assertEquals(0, decoded.getDayCount());
+    }
+
+    @Test
+    public void rejectsCorruptPayloads() throws Exception {
+        byte[] bytes = createWeek().toByteArray();
+        bytes[10] ^= 1;
+        try {
+            WeatherPayload.fromByteArray(bytes);
+            fail("A corrupt payload should fail its checksum");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        bytes = createWeek().toByteArray();
+        bytes[0] = WeatherPayload.VERSION + 1;
+        try {
+            WeatherPayload.fromByteArray(bytes);
+            fail("A payload of another version should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDaysOutOfOrder() throws Exception {
+        new WeatherPayload(true, new int[]{FIRST_DAY + 1, FIRST_DAY}, new int[2], new double[2], new double[2]);
+    }
+}
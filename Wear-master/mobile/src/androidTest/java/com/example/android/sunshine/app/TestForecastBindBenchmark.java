@@ -0,0 +1,84 @@
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.List;
+
+/*
+    Binds a year of forecast rows the way scrolling through the list would, reporting the time
+    per bound item, next to the time formatting the rows takes, which the loader now spends off
+    the main thread and bind used to spend on it for every row it showed.
+ */
+public class TestForecastBindBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastBindBenchmark.class.getSimpleName();
+
+    private static final int DAYS = 365;
+    // Scrolling down and back up, then down again
+    private static final int PASSES = 3;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private static MatrixCursor createYearOfForecasts() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherEntry._ID,
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+                WeatherContract.LocationEntry.COLUMN_COORD_LONG,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY});
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        int[] weatherIds = {800, 801, 500, 211, 600, 741};
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[]{i + 1, today + i * DAY_IN_MILLIS, "Clear", 21.5 + i % 10,
+                    12.5 - i % 7, "99705", weatherIds[i % weatherIds.length], 64.7488, -147.353, 1});
+        }
+        return cursor;
+    }
+
+    public void testBindYearOfForecasts() {
+        MatrixCursor cursor = createYearOfForecasts();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        List<ForecastRowModel> rows = ForecastRowModel.fromCursor(mContext, cursor);
+        long formatNanos = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(DAYS, rows.size());
+
+        ContextThemeWrapper context = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        ForecastAdapter adapter = new ForecastAdapter(context, null, new View(context),
+                AbsListView.CHOICE_MODE_NONE);
+        adapter.swapCursor(new ForecastLoader.RowsCursor(cursor, rows));
+        RecyclerView parent = new RecyclerView(context);
+        ForecastAdapter.ForecastAdapterViewHolder today = adapter.onCreateViewHolder(parent, adapter.getItemViewType(0));
+        ForecastAdapter.ForecastAdapterViewHolder future = adapter.onCreateViewHolder(parent, adapter.getItemViewType(1));
+
+        // Warm up, so class loading is not charged to the first pass
+        adapter.onBindViewHolder(today, 0);
+        adapter.onBindViewHolder(future, 1);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < DAYS; i++) {
+                int position = pass % 2 == 0 ? i : DAYS - 1 - i;
+                adapter.onBindViewHolder(position == 0 ? today : future, position);
+            }
+        }
+        long bindNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        assertEquals(rows.get(DAYS - 1).getHighText(), future.mHighTempView.getText().toString());
+        Log.i(LOG_TAG, DAYS + " rows: bind " + bindNanos / (PASSES * DAYS) / 1000 + " us/item, formatting "
+                + formatNanos / DAYS / 1000 + " us/row on the loader thread");
+    }
+}
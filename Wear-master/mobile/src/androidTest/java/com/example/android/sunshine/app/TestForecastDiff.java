@@ -0,0 +1,149 @@
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestForecastDiff extends AndroidTestCase {
+
+    private static final int DAYS = 7;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private ContextThemeWrapper mThemedContext;
+    private ForecastAdapter mAdapter;
+    private final List<String> mNotifications = new ArrayList<String>();
+
+    private final RecyclerView.AdapterDataObserver mObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            mNotifications.add("all changed");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mNotifications.add("changed " + positionStart + "," + itemCount + " " + payload);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mNotifications.add("inserted " + positionStart + "," + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mNotifications.add("removed " + positionStart + "," + itemCount);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mThemedContext = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        mAdapter = new ForecastAdapter(mThemedContext, null, new View(mThemedContext), AbsListView.CHOICE_MODE_NONE);
+        mAdapter.registerAdapterDataObserver(mObserver);
+    }
+
+    // A week of the location's forecast from the first day, today being day 0
+    private static MatrixCursor createForecast(long locationId, int firstDay, int[] weatherIds, double[] highs) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherEntry._ID,
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+                WeatherContract.LocationEntry.COLUMN_COORD_LONG,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY});
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        for (int i = 0; i < DAYS; i++) {
+            int day = firstDay + i;
+            cursor.addRow(new Object[]{locationId * 100 + day, today + day * DAY_IN_MILLIS, "Clear",
+                    highs[day], 10.5, "99705", weatherIds[day], 64.7488, -147.353, locationId});
+        }
+        return cursor;
+    }
+
+    private static int[] createWeatherIds() {
+        int[] weatherIds = new int[DAYS + 1];
+        for (int i = 0; i < weatherIds.length; i++) {
+            weatherIds[i] = 800;
+        }
+        return weatherIds;
+    }
+
+    private static double[] createHighs() {
+        double[] highs = new double[DAYS + 1];
+        for (int i = 0; i < highs.length; i++) {
+            highs[i] = 20.5 + i;
+        }
+        return highs;
+    }
+
+    public void testSameForecastNotifiesNothing() {
+        mAdapter.swapCursor(createForecast(1, 0, createWeatherIds(), createHighs()));
+        mNotifications.clear();
+
+        mAdapter.swapCursor(createForecast(1, 0, createWeatherIds(), createHighs()));
+
+        assertEquals(Collections.<String>emptyList(), mNotifications);
+        assertEquals(DAYS, mAdapter.getItemCount());
+    }
+
+    public void testNextDayNotifiesTheRowsThatDiffer() {
+        int[] weatherIds = createWeatherIds();
+        double[] highs = createHighs();
+        mAdapter.swapCursor(createForecast(1, 0, weatherIds, highs));
+        mNotifications.clear();
+
+        // Today has passed, a day was added at the end and two days' forecasts changed
+        highs[3] += 2;
+        weatherIds[5] = 501;
+        mAdapter.swapCursor(createForecast(1, 1, weatherIds, highs));
+
+        assertEquals("[removed 0,1, changed 2,1 " + ForecastRowModel.CHANGED_TEMPERATURES
+                        + ", changed 4,1 " + ForecastRowModel.CHANGED_CONDITION
+                        + ", inserted 6,1, changed 0,1 null]",
+                mNotifications.toString());
+        assertEquals(DAYS, mAdapter.getItemCount());
+    }
+
+    public void testNewLocationReplacesEveryRow() {
+        mAdapter.swapCursor(createForecast(1, 0, createWeatherIds(), createHighs()));
+        mNotifications.clear();
+
+        mAdapter.swapCursor(createForecast(2, 0, createWeatherIds(), createHighs()));
+
+        assertEquals("[removed 0," + DAYS + ", inserted 0," + DAYS + ", changed 0,1 null]",
+                mNotifications.toString());
+    }
+
+    public void testPayloadOnlySetsWhatChanged() {
+        double[] highs = createHighs();
+        mAdapter.swapCursor(createForecast(1, 0, createWeatherIds(), highs));
+        RecyclerView parent = new RecyclerView(mThemedContext);
+        ForecastAdapter.ForecastAdapterViewHolder holder = mAdapter.onCreateViewHolder(parent, mAdapter.getItemViewType(1));
+        mAdapter.onBindViewHolder(holder, 1);
+        String oldHigh = holder.mHighTempView.getText().toString();
+        holder.mDescriptionView.setText("not bound again");
+
+        highs[1] += 2;
+        mAdapter.swapCursor(createForecast(1, 0, createWeatherIds(), highs));
+        List<Object> payloads = new ArrayList<Object>();
+        payloads.add(ForecastRowModel.CHANGED_TEMPERATURES);
+        mAdapter.onBindViewHolder(holder, 1, payloads);
+
+        assertFalse(oldHigh.equals(holder.mHighTempView.getText().toString()));
+        assertEquals("not bound again", holder.mDescriptionView.getText().toString());
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/*
+    Checks a tenth of a 10000 row list, then loads the list again with its first rows gone, the
+    way a long history scrolls off, and times finding the checked rows again.  Looking them up
+    in the adapter's index is compared with the scan over neighbouring positions that the
+    ItemChoiceManager falls back on for adapters without one.
+ */
+public class TestItemChoiceManager extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestItemChoiceManager.class.getSimpleName();
+
+    private static final int ROWS = 10000;
+    // Rows gone from the front on the second load, further than the scan looks
+    private static final int SHIFT = 500;
+    private static final int CHECKED_EVERY = 10;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private ContextThemeWrapper mThemedContext;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mThemedContext = new ContextThemeWrapper(mContext, R.style.AppTheme);
+    }
+
+    private static MatrixCursor createForecasts(int firstDay) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherEntry._ID,
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+                WeatherContract.LocationEntry.COLUMN_COORD_LONG,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY});
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            int day = firstDay + i;
+            cursor.addRow(new Object[]{day + 1, today + day * DAY_IN_MILLIS, "Clear", 21.5 + day % 10,
+                    12.5 - day % 7, "99705", 800, 64.7488, -147.353, 1});
+        }
+        return cursor;
+    }
+
+    // Checks every CHECKED_EVERY row from SHIFT on, the rows still there after the second load
+    private static void checkRows(ItemChoiceManager icm, RecyclerView.Adapter adapter) {
+        for (int position = SHIFT; position < ROWS; position += CHECKED_EVERY) {
+            icm.mCheckStates.put(position, true);
+            icm.mCheckedIdStates.put(adapter.getItemId(position), position);
+        }
+    }
+
+    public void testIndexNeverLosesASelection() {
+        ForecastAdapter adapter = new ForecastAdapter(mThemedContext, null, new View(mThemedContext),
+                AbsListView.CHOICE_MODE_MULTIPLE);
+        adapter.swapCursor(createForecasts(0));
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        checkRows(icm, adapter);
+        int checked = icm.mCheckedIdStates.size();
+
+        // The swap has the ItemChoiceManager find the checked rows once the load is notified
+        adapter.swapCursor(createForecasts(SHIFT));
+        for (int position = 0; position < ROWS - SHIFT; position++) {
+            assertEquals("Position " + position, position % CHECKED_EVERY == 0, icm.isItemChecked(position));
+        }
+        assertEquals(checked, icm.mCheckedIdStates.size());
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        icm.confirmCheckedPositionsById(adapter.getItemCount());
+        long indexNanos = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(checked, icm.mCheckedIdStates.size());
+
+        // The same selection, on an adapter the ItemChoiceManager has to scan
+        ScanningAdapter scanning = new ScanningAdapter();
+        scanning.mForecastAdapter.swapCursor(createForecasts(0));
+        ItemChoiceManager scanningIcm = new ItemChoiceManager(scanning);
+        scanningIcm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        checkRows(scanningIcm, scanning);
+        scanning.mForecastAdapter.swapCursor(createForecasts(SHIFT));
+
+        start = SystemClock.elapsedRealtimeNanos();
+        scanningIcm.confirmCheckedPositionsById(scanning.getItemCount());
+        long scanNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(LOG_TAG, checked + " of " + ROWS + " rows checked: index " + indexNanos / 1000
+                + " us, scan " + scanNanos / 1000 + " us keeping " + scanningIcm.mCheckedIdStates.size());
+    }
+
+    // Has the forecast rows' ids, but no index of them
+    private class ScanningAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        final ForecastAdapter mForecastAdapter = new ForecastAdapter(mThemedContext, null,
+                new View(mThemedContext), AbsListView.CHOICE_MODE_NONE);
+
+        ScanningAdapter() {
+            setHasStableIds(true);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mForecastAdapter.getItemId(position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mForecastAdapter.getItemCount();
+        }
+    }
+}
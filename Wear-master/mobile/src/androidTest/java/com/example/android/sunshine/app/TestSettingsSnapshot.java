@@ -0,0 +1,67 @@
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.util.concurrent.Callable;
+
+public class TestSettingsSnapshot extends AndroidTestCase {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private SharedPreferences mPrefs;
+    private String mUnitsKey;
+    private String mArtPackKey;
+    private String mUnits;
+    private String mArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mArtPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mUnits = mPrefs.getString(mUnitsKey, null);
+        mArtPack = mPrefs.getString(mArtPackKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().putString(mUnitsKey, mUnits).putString(mArtPackKey, mArtPack).commit();
+        super.tearDown();
+    }
+
+    public void testSnapshotFollowsTheSettings() throws Exception {
+        mPrefs.edit()
+                .putString(mUnitsKey, mContext.getString(R.string.pref_units_metric))
+                .putString(mArtPackKey, mContext.getString(R.string.pref_art_pack_sunshine))
+                .commit();
+        waitForMetric(true);
+        assertTrue(Utility.usingLocalGraphics(mContext));
+
+        // The listener is told on the main thread, after the commit returns
+        mPrefs.edit()
+                .putString(mUnitsKey, mContext.getString(R.string.pref_units_imperial))
+                .putString(mArtPackKey, mContext.getString(R.string.pref_art_pack_cute_dogs))
+                .commit();
+        waitForMetric(false);
+        assertFalse(Utility.usingLocalGraphics(mContext));
+        assertEquals(String.format(mContext.getString(R.string.pref_art_pack_cute_dogs), "clear"),
+                Utility.getArtUrlForWeatherCondition(mContext, 800));
+        assertSame("Reads without a change should share the snapshot",
+                SettingsSnapshot.get(mContext), SettingsSnapshot.get(mContext));
+    }
+
+    private void waitForMetric(final boolean metric) throws Exception {
+        PollingCheck.check("Error: the settings snapshot did not see the new units", TIMEOUT_MS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return Utility.isMetric(mContext) == metric;
+                    }
+                });
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Compares the old bulk insert (SQLiteDatabase.insert per row, a Time per normalized date)
+    with the provider's compiled statement path on 10k and 100k forecast rows, reporting
+    rows/sec, bytes allocated and GC runs for each.
+
+    Rows are handed over in chunks of CHUNK_SIZE, one transaction per chunk, so 100k rows of
+    ContentValues never have to be in memory at once.  Filling a chunk costs both paths the
+    same and is included in both measurements.
+ */
+public class TestBulkInsertBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestBulkInsertBenchmark.class.getSimpleName();
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private static class Measurement {
+        long elapsedNanos;
+        long allocatedBytes;
+        long gcCount;
+
+        double rowsPerSecond(int rows) {
+            return rows * 1e9 / elapsedNanos;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteWeather();
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testBulkInsert10k() {
+        runBenchmark(10000);
+    }
+
+    public void testBulkInsert100k() {
+        runBenchmark(100000);
+    }
+
+    private void runBenchmark(int rows) {
+        long locationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestUtilities.createNorthPoleLocationValues()));
+        ContentValues[] chunk = new ContentValues[CHUNK_SIZE];
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            chunk[i] = TestUtilities.createWeatherValues(locationRowId);
+        }
+
+        // Warm up both paths so class loading and statement caches are not charged to either
+        insertLegacy(chunk, CHUNK_SIZE);
+        deleteWeather();
+        insertWithProvider(chunk, CHUNK_SIZE);
+        deleteWeather();
+
+        Measurement legacy = insertLegacy(chunk, rows);
+        assertEquals(rows, countWeather());
+        deleteWeather();
+
+        Measurement compiled = insertWithProvider(chunk, rows);
+        assertEquals(rows, countWeather());
+        deleteWeather();
+
+        Log.i(LOG_TAG, rows + " rows: db.insert " + Math.round(legacy.rowsPerSecond(rows)) + " rows/s, "
+                + legacy.allocatedBytes + " bytes, " + legacy.gcCount + " GCs; compiled statement "
+                + Math.round(compiled.rowsPerSecond(rows)) + " rows/s, "
+                + compiled.allocatedBytes + " bytes, " + compiled.gcCount + " GCs");
+        assertTrue("Error: the compiled statement path should allocate less than db.insert",
+                compiled.allocatedBytes < legacy.allocatedBytes);
+    }
+
+    /*
+        The bulk insert as it was: normalizeDate allocates a Time for every row, and
+        SQLiteDatabase.insert builds and compiles the SQL for every row.
+     */
+    @SuppressWarnings("deprecation")
+    private Measurement insertLegacy(ContentValues[] chunk, int rows) {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        Measurement measurement = new Measurement();
+        long gcBefore = gcCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int offset = 0; offset < rows; offset += CHUNK_SIZE) {
+            fillChunk(chunk, offset);
+            db.beginTransaction();
+            try {
+                for (ContentValues value : chunk) {
+                    long dateValue = value.getAsLong(WeatherEntry.COLUMN_DATE);
+                    value.put(WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(dateValue));
+                    db.insert(WeatherEntry.TABLE_NAME, null, value);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        measurement.elapsedNanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        measurement.allocatedBytes = Debug.getThreadAllocSize();
+        measurement.gcCount = gcCount() - gcBefore;
+        db.close();
+        return measurement;
+    }
+
+    @SuppressWarnings("deprecation")
+    private Measurement insertWithProvider(ContentValues[] chunk, int rows) {
+        Measurement measurement = new Measurement();
+        long gcBefore = gcCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int offset = 0; offset < rows; offset += CHUNK_SIZE) {
+            fillChunk(chunk, offset);
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, chunk);
+        }
+        measurement.elapsedNanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        measurement.allocatedBytes = Debug.getThreadAllocSize();
+        measurement.gcCount = gcCount() - gcBefore;
+        return measurement;
+    }
+
+    private static void fillChunk(ContentValues[] chunk, int offset) {
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i].put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + (offset + i) * DAY_IN_MILLIS);
+            chunk[i].put(WeatherEntry.COLUMN_MAX_TEMP, 75 + (offset + i) % 10);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long gcCount() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String count = Debug.getRuntimeStat("art.gc.gc-count");
+            if (count != null) {
+                return Long.parseLong(count);
+            }
+        }
+        return Debug.getGlobalGcInvocationCount();
+    }
+
+    private int countWeather() {
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID}, null, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    private void deleteWeather() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Upgrades databases written with an old schema to the current one and checks what is left.
+    The databases live in a file of their own, so the app's database is never touched.
+ */
+public class TestDbMigrations extends AndroidTestCase {
+
+    private static final String TEST_DATABASE_NAME = "migration_test.db";
+
+    // The schema of version 2, as WeatherDbHelper.onCreate wrote it
+    private static final String V2_CREATE_LOCATION_TABLE = "CREATE TABLE location (" +
+            "_id INTEGER PRIMARY KEY,location_setting TEXT UNIQUE NOT NULL, " +
+            "city_name TEXT NOT NULL, coord_lat REAL NOT NULL, coord_long REAL NOT NULL  );";
+    private static final String V2_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL," +
+            "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, " +
+            " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+            "UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    private static final int DAYS = 14;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+        super.tearDown();
+    }
+
+    private long createPopulatedDatabase(int version) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(TEST_DATABASE_NAME), null);
+        long locationRowId;
+        try {
+            db.execSQL(V2_CREATE_LOCATION_TABLE);
+            db.execSQL(V2_CREATE_WEATHER_TABLE);
+            locationRowId = db.insert(LocationEntry.TABLE_NAME, null,
+                    TestUtilities.createNorthPoleLocationValues());
+            for (int i = 0; i < DAYS; i++) {
+                ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+                weatherValues.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + i * DAY_IN_MILLIS);
+                weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, 75 + i);
+                assertTrue(db.insert(WeatherEntry.TABLE_NAME, null, weatherValues) != -1);
+            }
+            db.setVersion(version);
+        } finally {
+            db.close();
+        }
+        return locationRowId;
+    }
+
+    public void testUpgradeFromVersion2KeepsData() {
+        long locationRowId = createPopulatedDatabase(2);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME, WeatherMigrations.STEPS);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+
+            Cursor cursor = db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null);
+            TestUtilities.validateCursor("Error: the location did not survive the upgrade",
+                    cursor, TestUtilities.createNorthPoleLocationValues());
+
+            cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                    WeatherEntry.COLUMN_DATE + " ASC");
+            assertEquals("Error: weather rows were lost in the upgrade", DAYS, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ContentValues expected = TestUtilities.createWeatherValues(locationRowId);
+                expected.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + i * DAY_IN_MILLIS);
+                expected.put(WeatherEntry.COLUMN_MAX_TEMP, 75 + i);
+                TestUtilities.validateCurrentRecord("Error: weather row " + i + " changed in the upgrade",
+                        cursor, expected);
+            }
+            cursor.close();
+
+            assertCurrentSchema(db);
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testUpgradeFromUnsupportedVersionRecreates() {
+        createPopulatedDatabase(1);
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME, WeatherMigrations.STEPS);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+            Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertEquals(0, cursor.getCount());
+            cursor.close();
+            assertCurrentSchema(db);
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testFailedStepRecreates() {
+        createPopulatedDatabase(2);
+
+        Migration[] failing = new Migration[WeatherMigrations.STEPS.length];
+        System.arraycopy(WeatherMigrations.STEPS, 0, failing, 0, failing.length);
+        failing[failing.length - 1] = new Migration(WeatherDbHelper.DATABASE_VERSION) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE no_such_table ADD COLUMN nothing TEXT");
+            }
+        };
+
+        WeatherDbHelper helper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME, failing);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+            Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertEquals("Error: a failed migration should leave a fresh database", 0, cursor.getCount());
+            cursor.close();
+            assertCurrentSchema(db);
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testMigrationsAreOrdered() {
+        int version = WeatherMigrations.OLDEST_MIGRATABLE_VERSION;
+        for (Migration migration : WeatherMigrations.STEPS) {
+            assertEquals("Error: migration steps must be consecutive", version + 1, migration.toVersion);
+            version = migration.toVersion;
+        }
+        assertEquals("Error: the last migration step must reach DATABASE_VERSION",
+                WeatherDbHelper.DATABASE_VERSION, version);
+    }
+
+    /*
+        Whatever way the database got to the current version, it must have the same tables and
+        indexes as one created from scratch.
+     */
+    private void assertCurrentSchema(SQLiteDatabase upgraded) {
+        String freshName = "migration_fresh.db";
+        mContext.deleteDatabase(freshName);
+        WeatherDbHelper freshHelper = new WeatherDbHelper(mContext, freshName, WeatherMigrations.STEPS);
+        try {
+            assertEquals(schemaOf(freshHelper.getReadableDatabase()), schemaOf(upgraded));
+        } finally {
+            freshHelper.close();
+            mContext.deleteDatabase(freshName);
+        }
+    }
+
+    private static String schemaOf(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%'"
+                + " ORDER BY type, name", null);
+        StringBuilder sb = new StringBuilder();
+        while (cursor.moveToNext()) {
+            sb.append(cursor.getString(0)).append(' ').append(cursor.getString(1)).append('\n');
+        }
+        cursor.close();
+        return sb.toString();
+    }
+}
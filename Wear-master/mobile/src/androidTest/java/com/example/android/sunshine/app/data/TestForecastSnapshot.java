@@ -0,0 +1,92 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    The provider runs in the test's process, so the snapshots it swaps in are the ones the
+    test reads.
+ */
+public class TestForecastSnapshot extends AndroidTestCase {
+
+    private static final int DAYS = 7;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        mLocationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestUtilities.createNorthPoleLocationValues()));
+    }
+
+    private ContentValues[] createWeek(int firstMaxTemp) {
+        return createWeek(0, firstMaxTemp);
+    }
+
+    private ContentValues[] createWeek(int firstDay, int firstMaxTemp) {
+        long today = System.currentTimeMillis();
+        ContentValues[] rows = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            rows[i] = TestUtilities.createWeatherValues(mLocationRowId);
+            rows[i].put(WeatherEntry.COLUMN_DATE, today + (firstDay + i) * DAY_IN_MILLIS);
+            rows[i].put(WeatherEntry.COLUMN_MAX_TEMP, firstMaxTemp + i);
+        }
+        return rows;
+    }
+
+    public void testSnapshotFollowsCommits() {
+        long version = ForecastSnapshot.current().getVersion();
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createWeek(75));
+
+        ForecastSnapshot snapshot = ForecastSnapshot.current();
+        assertTrue("Error: the bulk insert did not swap in a new snapshot", snapshot.getVersion() > version);
+        ForecastSnapshot.LocationForecast forecast = snapshot.get(TestUtilities.TEST_LOCATION);
+        assertNotNull(forecast);
+        assertEquals(DAYS, forecast.getCount());
+        int today = forecast.indexOfFirstDayFrom(WeatherContract.normalizeDate(System.currentTimeMillis()));
+        assertEquals(0, today);
+        assertEquals(75.0, forecast.getMaxTemp(today));
+        assertEquals(321, forecast.getWeatherId(today));
+        assertEquals("Asteroids", forecast.getShortDesc(today));
+
+        // Storing the same week again changes nothing, so the snapshot stays
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createWeek(75));
+        assertSame(snapshot, ForecastSnapshot.current());
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createWeek(80));
+        assertEquals(80.0, ForecastSnapshot.current().get(TestUtilities.TEST_LOCATION).getMaxTemp(0));
+        // The old snapshot is left as it was for whoever still reads it
+        assertEquals(75.0, forecast.getMaxTemp(0));
+
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        assertNull(ForecastSnapshot.current().get(TestUtilities.TEST_LOCATION));
+    }
+
+    public void testGetToday() {
+        assertNull(ForecastSnapshot.getToday(mContext, TestUtilities.TEST_LOCATION));
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createWeek(75));
+        ForecastSnapshot.Day today = ForecastSnapshot.getToday(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull(today);
+        assertEquals(WeatherContract.normalizeDate(System.currentTimeMillis()), today.date);
+        assertEquals(75.0, today.maxTemp);
+        assertEquals(65.0, today.minTemp);
+    }
+
+    public void testGetTodayAcrossAGap() {
+        // Nothing for today, the way a snapshot looks the morning after a missed sync
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createWeek(1, 75));
+        ForecastSnapshot.Day fromSnapshot = ForecastSnapshot.getToday(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull("Error: the snapshot should answer with the next day, as the query does", fromSnapshot);
+        assertEquals(WeatherContract.normalizeDate(System.currentTimeMillis() + DAY_IN_MILLIS), fromSnapshot.date);
+        assertEquals(75.0, fromSnapshot.maxTemp);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.HistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.RollupEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Calendar;
+
+/*
+    Archives two weeks of weather, Monday January 25th to Sunday February 7th 2016, and checks
+    the weather left, the monthly partitions and the daily and weekly rollups.
+ */
+public class TestHistory extends AndroidTestCase {
+
+    private static final int DAYS = 14;
+
+    private long[] mDates;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAll();
+
+        long locationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_URI, TestUtilities.createNorthPoleLocationValues()));
+
+        mDates = new long[DAYS];
+        ContentValues[] rows = new ContentValues[DAYS];
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2016, Calendar.JANUARY, 25);
+        for (int i = 0; i < DAYS; i++) {
+            mDates[i] = WeatherContract.normalizeDate(calendar.getTimeInMillis());
+            rows[i] = TestUtilities.createWeatherValues(locationRowId);
+            rows[i].put(WeatherEntry.COLUMN_DATE, mDates[i]);
+            rows[i].put(WeatherEntry.COLUMN_MIN_TEMP, 50 + i);
+            rows[i].put(WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, rows);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll();
+        super.tearDown();
+    }
+
+    private void deleteAll() {
+        mContext.getContentResolver().delete(HistoryEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private int archive(long cutoffDate) {
+        Bundle result = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_ARCHIVE_EXPIRED, Long.toString(cutoffDate), null);
+        assertNotNull(result);
+        return result.getInt(WeatherContract.EXTRA_ARCHIVED_COUNT);
+    }
+
+    public void testArchiveMovesRowsIntoMonthlyPartitions() {
+        // Up to and including Wednesday February 3rd
+        assertEquals(10, archive(mDates[9]));
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_DATE}, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals("Error: archived rows are still in the weather table", DAYS - 10, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(mDates[10], cursor.getLong(0));
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                HistoryEntry.buildHistoryLocationWithRange(TestUtilities.TEST_LOCATION, mDates[0], mDates[DAYS - 1]),
+                new String[]{WeatherEntry.COLUMN_DATE, WeatherEntry.COLUMN_MIN_TEMP}, null, null, null);
+        assertEquals("Error: the history across both months is incomplete", 10, cursor.getCount());
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals(mDates[i], cursor.getLong(0));
+            assertEquals(50.0 + i, cursor.getDouble(1));
+        }
+        cursor.close();
+
+        // A range within February only reads the February partition
+        cursor = mContext.getContentResolver().query(
+                HistoryEntry.buildHistoryLocationWithRange(TestUtilities.TEST_LOCATION, mDates[7], mDates[DAYS - 1]),
+                null, null, null, null);
+        assertEquals(3, cursor.getCount());
+        cursor.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        cursor = dbHelper.getReadableDatabase().query(HistoryEntry.PARTITIONS_TABLE_NAME,
+                new String[]{HistoryEntry.COLUMN_TABLE_NAME}, null, null, null, null,
+                HistoryEntry.COLUMN_START_DATE + " ASC");
+        assertEquals(2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(HistoryEntry.TABLE_PREFIX + "201601", cursor.getString(0));
+        cursor.moveToNext();
+        assertEquals(HistoryEntry.TABLE_PREFIX + "201602", cursor.getString(0));
+        cursor.close();
+        dbHelper.close();
+
+        // Nothing is left to archive
+        assertEquals(0, archive(mDates[9]));
+    }
+
+    public void testRollups() {
+        archive(mDates[9]);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                RollupEntry.buildRollupUri(TestUtilities.TEST_LOCATION, RollupEntry.PERIOD_DAY),
+                null, null, null, null);
+        assertEquals(10, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(mDates[0], cursor.getLong(cursor.getColumnIndex(RollupEntry.COLUMN_PERIOD_START)));
+        assertEquals(60.0, cursor.getDouble(cursor.getColumnIndex(RollupEntry.COLUMN_AVG_TEMP)));
+        cursor.close();
+
+        assertWeek(0, 50, 76, 63, 7);
+        assertWeek(7, 57, 79, 68, 3);
+
+        // The rest of the second week is merged with the days archived before
+        archive(mDates[DAYS - 1]);
+        assertWeek(0, 50, 76, 63, 7);
+        assertWeek(7, 57, 83, 70, 7);
+    }
+
+    private void assertWeek(int firstDay, double min, double max, double avg, int dayCount) {
+        Cursor cursor = mContext.getContentResolver().query(
+                RollupEntry.buildRollupUri(TestUtilities.TEST_LOCATION, RollupEntry.PERIOD_WEEK),
+                null,
+                RollupEntry.COLUMN_PERIOD_START + " = ?",
+                new String[]{Long.toString(mDates[firstDay])},
+                null);
+        ContentValues expected = new ContentValues();
+        expected.put(RollupEntry.COLUMN_MIN_TEMP, min);
+        expected.put(RollupEntry.COLUMN_MAX_TEMP, max);
+        expected.put(RollupEntry.COLUMN_AVG_TEMP, avg);
+        expected.put(RollupEntry.COLUMN_DAY_COUNT, dayCount);
+        TestUtilities.validateCursor("Error: wrong rollup for the week of day " + firstDay, cursor, expected);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/*
+    Guards the indexes of the weather database: every query shape WeatherProvider serves must be
+    answered with an index search, never a full table scan, and must stay within its latency
+    budget on a database holding a million rows of history.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    // The projection of ForecastFragment, which the covering index is tuned for
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final String FORECAST_SORT_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private static final int HISTORY_LOCATIONS = 100;
+    private static final int HISTORY_DAYS = 10000;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final long HISTORY_START = 946728000000L;  // January 1st, 2000, at noon UTC
+
+    private static final int LATENCY_RUNS = 21;
+    private static final long LATENCY_BUDGET_MILLIS = 20;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testIndexesCreated() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND name=?",
+                new String[]{WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE});
+        assertTrue("Error: the weather location/date index was not created", c.moveToFirst());
+        c.close();
+        db.close();
+    }
+
+    /*
+        One query per URI type of WeatherProvider.buildUriMatcher, built exactly the way the
+        provider builds it.  For the plain weather URI, the selections the app itself issues.
+     */
+    public void testNoFullTableScans() {
+        assertEquals(WeatherProvider.WEATHER_WITH_LOCATION, WeatherProvider.buildUriMatcher()
+                .match(WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION)));
+        assertEquals(WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE, WeatherProvider.buildUriMatcher()
+                .match(WeatherEntry.buildWeatherLocationWithDate(TestUtilities.TEST_LOCATION, HISTORY_START)));
+        assertEquals(WeatherProvider.WEATHER, WeatherProvider.buildUriMatcher().match(WeatherEntry.CONTENT_URI));
+        assertEquals(WeatherProvider.LOCATION, WeatherProvider.buildUriMatcher().match(LocationEntry.CONTENT_URI));
+
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        String date = Long.toString(HISTORY_START);
+        try {
+            assertNoFullScan(db, "weather/*",
+                    WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                            WeatherProvider.sLocationSettingSelection, null, null, FORECAST_SORT_ORDER, null),
+                    TestUtilities.TEST_LOCATION);
+            assertNoFullScan(db, "weather/*?date=",
+                    WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                            WeatherProvider.sLocationSettingWithStartDateSelection, null, null,
+                            FORECAST_SORT_ORDER, null),
+                    TestUtilities.TEST_LOCATION, date);
+            assertNoFullScan(db, "weather/*/#",
+                    WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(null,
+                            WeatherProvider.sLocationSettingAndDaySelection, null, null, null, null),
+                    TestUtilities.TEST_LOCATION, date);
+            // The stored rows the delta upsert compares against
+            assertNoFullScan(db, "weather by location and date range",
+                    "SELECT * FROM " + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_LOC_KEY
+                            + " = ? AND " + WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?",
+                    "1", date, date);
+            // The expired days WeatherHistory.archive reads, copies into the history and deletes
+            assertNoFullScan(db, "expired weather",
+                    "SELECT " + WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE + " FROM "
+                            + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?",
+                    date);
+            assertNoFullScan(db, "location",
+                    "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME + " WHERE "
+                            + LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                    TestUtilities.TEST_LOCATION);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void assertNoFullScan(SQLiteDatabase db, String name, String sql, String... args) {
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailIndex = plan.getColumnIndex("detail");
+            StringBuilder details = new StringBuilder();
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailIndex);
+                details.append(detail).append("; ");
+                assertFalse("Error: " + name + " falls back to a full scan: " + detail,
+                        detail.startsWith("SCAN "));
+            }
+            Log.d(LOG_TAG, name + ": " + details);
+        } finally {
+            plan.close();
+        }
+    }
+
+    /*
+        Seeds 100 locations with 10000 days each and times each URI type through the provider.
+        The median of LATENCY_RUNS runs has to stay within LATENCY_BUDGET_MILLIS.
+     */
+    public void testLatencyOnMillionRows() {
+        TimeZone timeZone = TimeZone.getDefault();
+        long[] days = new long[HISTORY_DAYS];
+        for (int i = 0; i < HISTORY_DAYS; i++) {
+            days[i] = WeatherContract.normalizeDate(HISTORY_START + i * DAY_IN_MILLIS, timeZone);
+        }
+        seedHistory(days);
+
+        String location = locationSetting(HISTORY_LOCATIONS / 2);
+        long lastDay = days[HISTORY_DAYS - 1];
+        long startDay = days[HISTORY_DAYS - 14];
+
+        assertWithinBudget("weather/*?date=", WeatherEntry.CONTENT_URI.buildUpon().appendPath(location)
+                .appendQueryParameter(WeatherEntry.COLUMN_DATE, Long.toString(startDay)).build(),
+                FORECAST_COLUMNS, null, null, FORECAST_SORT_ORDER, 14);
+        assertWithinBudget("weather/*/#", WeatherEntry.CONTENT_URI.buildUpon().appendPath(location)
+                .appendPath(Long.toString(lastDay)).build(),
+                null, null, null, null, 1);
+        assertWithinBudget("weather", WeatherEntry.CONTENT_URI, null,
+                WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{"1", Long.toString(startDay)}, null, 14);
+        assertWithinBudget("location", LocationEntry.CONTENT_URI, null,
+                LocationEntry.COLUMN_LOCATION_SETTING + " = ?", new String[]{location}, null, 1);
+    }
+
+    private void seedHistory(long[] days) {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        long start = SystemClock.elapsedRealtime();
+        db.beginTransaction();
+        try {
+            SQLiteStatement insertLocation = db.compileStatement("INSERT INTO " + LocationEntry.TABLE_NAME
+                    + " (" + LocationEntry._ID + "," + LocationEntry.COLUMN_LOCATION_SETTING + ","
+                    + LocationEntry.COLUMN_CITY_NAME + "," + LocationEntry.COLUMN_COORD_LAT + ","
+                    + LocationEntry.COLUMN_COORD_LONG + ") VALUES (?,?,?,?,?)");
+            SQLiteStatement insertWeather = db.compileStatement("INSERT INTO " + WeatherEntry.TABLE_NAME
+                    + " (" + WeatherEntry.COLUMN_LOC_KEY + "," + WeatherEntry.COLUMN_DATE + ","
+                    + WeatherEntry.COLUMN_SHORT_DESC + "," + WeatherEntry.COLUMN_WEATHER_ID + ","
+                    + WeatherEntry.COLUMN_MIN_TEMP + "," + WeatherEntry.COLUMN_MAX_TEMP + ","
+                    + WeatherEntry.COLUMN_HUMIDITY + "," + WeatherEntry.COLUMN_PRESSURE + ","
+                    + WeatherEntry.COLUMN_WIND_SPEED + "," + WeatherEntry.COLUMN_DEGREES
+                    + ") VALUES (?,?,?,?,?,?,?,?,?,?)");
+            for (int location = 1; location <= HISTORY_LOCATIONS; location++) {
+                insertLocation.bindLong(1, location);
+                insertLocation.bindString(2, locationSetting(location));
+                insertLocation.bindString(3, "City " + location);
+                insertLocation.bindDouble(4, location % 90);
+                insertLocation.bindDouble(5, location % 180);
+                insertLocation.executeInsert();
+
+                for (int day = 0; day < days.length; day++) {
+                    insertWeather.bindLong(1, location);
+                    insertWeather.bindLong(2, days[day]);
+                    insertWeather.bindString(3, "Clear");
+                    insertWeather.bindLong(4, 800);
+                    insertWeather.bindDouble(5, day % 20);
+                    insertWeather.bindDouble(6, 10 + day % 20);
+                    insertWeather.bindDouble(7, 50);
+                    insertWeather.bindDouble(8, 1013.25);
+                    insertWeather.bindDouble(9, 3.5);
+                    insertWeather.bindDouble(10, day % 360);
+                    insertWeather.executeInsert();
+                }
+            }
+            insertLocation.close();
+            insertWeather.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(LOG_TAG, "Seeded " + HISTORY_LOCATIONS * days.length + " rows in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+        db.close();
+    }
+
+    private static String locationSetting(int location) {
+        return Integer.toString(10000 + location);
+    }
+
+    private void assertWithinBudget(String name, Uri uri, String[] projection, String selection,
+                                    String[] selectionArgs, String sortOrder, int expectedRows) {
+        long[] runs = new long[LATENCY_RUNS];
+        for (int i = 0; i < LATENCY_RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = mContext.getContentResolver().query(uri, projection, selection,
+                    selectionArgs, sortOrder);
+            // getCount fills the window, which is when the query actually runs
+            int count = cursor.getCount();
+            cursor.close();
+            runs[i] = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals("Error: unexpected row count for " + name, expectedRows, count);
+        }
+        Arrays.sort(runs);
+        long medianMillis = runs[LATENCY_RUNS / 2] / 1000000;
+        Log.d(LOG_TAG, name + ": median " + medianMillis + " ms, max "
+                + runs[LATENCY_RUNS - 1] / 1000000 + " ms");
+        assertTrue("Error: " + name + " took " + medianMillis + " ms, the budget is "
+                + LATENCY_BUDGET_MILLIS + " ms", medianMillis <= LATENCY_BUDGET_MILLIS);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.SyncMetricsEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+
+public class TestSyncMetrics extends AndroidTestCase {
+
+    private static final long MILLI_IN_NANOS = 1000 * 1000;
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(mContext.getCacheDir(), "test_sync_metrics.bin");
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testBuckets() {
+        assertEquals(0, SyncMetrics.bucketFor(999));
+        assertEquals(1, SyncMetrics.bucketFor(1000));
+        assertEquals(2, SyncMetrics.bucketFor(3000));
+        assertEquals(3, SyncMetrics.bucketFor(4000));
+        assertEquals(SyncMetrics.BUCKET_COUNT - 1, SyncMetrics.bucketFor(Long.MAX_VALUE / 1000));
+    }
+
+    public void testRingBufferKeepsTheNewestSyncs() throws Exception {
+        int syncs = SyncMetrics.CAPACITY + 5;
+        for (int i = 0; i < syncs; i++) {
+            SyncMetrics.Recorder recorder = new SyncMetrics.Recorder();
+            recorder.addLocations(i);
+            recorder.record(SyncMetrics.STAGE_PARSE, 3 * MILLI_IN_NANOS);
+            SyncMetrics.append(mFile, recorder);
+        }
+
+        List<SyncMetrics.Record> records = SyncMetrics.read(mFile);
+        assertEquals(SyncMetrics.CAPACITY, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            SyncMetrics.Record record = records.get(i);
+            assertEquals("Error: the syncs should come newest first", syncs - 1 - i, record.locations);
+            assertEquals(1, record.counts[SyncMetrics.STAGE_PARSE]);
+            assertEquals(3000, record.totalMicros[SyncMetrics.STAGE_PARSE]);
+            assertEquals(1, record.buckets[SyncMetrics.STAGE_PARSE][2]);
+            assertEquals(0, record.counts[SyncMetrics.STAGE_CONNECT]);
+        }
+    }
+
+    public void testMeteredStreamRecordsOnClose() throws Exception {
+        SyncMetrics.Recorder recorder = new SyncMetrics.Recorder();
+        SyncMetrics.MeteredInputStream in = recorder.meter(new ByteArrayInputStream(new byte[1000]));
+        byte[] buffer = new byte[300];
+        while (in.read(buffer, 0, buffer.length) != -1) {
+            // drain
+        }
+        in.close();
+        in.close();
+        SyncMetrics.append(mFile, recorder);
+
+        SyncMetrics.Record record = SyncMetrics.read(mFile).get(0);
+        assertEquals(1000, record.bytesReceived);
+        assertEquals("Error: closing twice must not record twice", 1, record.counts[SyncMetrics.STAGE_BODY_READ]);
+    }
+
+    public void testProviderServesStages() {
+        SyncMetrics.getFile(mContext).delete();
+        SyncMetrics.Recorder recorder = new SyncMetrics.Recorder();
+        recorder.record(SyncMetrics.STAGE_DB_TRANSACTION, 5 * MILLI_IN_NANOS);
+        recorder.record(SyncMetrics.STAGE_DB_TRANSACTION, 40 * MILLI_IN_NANOS);
+        SyncMetrics.append(mContext, recorder);
+
+        Cursor cursor = mContext.getContentResolver().query(SyncMetricsEntry.CONTENT_URI, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertTrue(cursor.getLong(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_WALL_MICROS)) >= 0);
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(SyncMetricsEntry.STAGES_URI, null, null, null, null);
+        assertEquals(SyncMetrics.STAGE_COUNT, cursor.getCount());
+        cursor.moveToPosition(SyncMetrics.STAGE_DB_TRANSACTION);
+        assertEquals("db_transaction", cursor.getString(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_STAGE)));
+        assertEquals(2, cursor.getInt(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_COUNT)));
+        assertEquals(40000, cursor.getLong(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_MAX_MICROS)));
+        // 5 ms is under 8 ms, 40 ms under 64 ms
+        assertEquals(1, cursor.getInt(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_BUCKET_PREFIX + 3)));
+        assertEquals(1, cursor.getInt(cursor.getColumnIndex(SyncMetricsEntry.COLUMN_BUCKET_PREFIX + 6)));
+        cursor.close();
+        SyncMetrics.getFile(mContext).delete();
+    }
+}
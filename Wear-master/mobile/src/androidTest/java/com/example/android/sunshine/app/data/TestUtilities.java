@@ -158,6 +158,16 @@ public class TestUtilities extends AndroidTestCase {
             }.run();
             mHT.quit();
         }
+
+        public void assertNoNotificationWithin(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mHT.quit();
+            assertFalse("Error: an unexpected change notification was sent", mContentChanged);
+        }
     }
 
     static TestContentObserver getTestContentObserver() {
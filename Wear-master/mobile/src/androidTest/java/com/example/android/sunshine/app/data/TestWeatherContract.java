@@ -18,6 +18,8 @@ package com.example.android.sunshine.app.data;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 
+import java.util.TimeZone;
+
 /*
     Students: This is NOT a complete test for the WeatherContract --- just for the functions
     that we expect you to write.
@@ -42,4 +44,27 @@ public class TestWeatherContract extends AndroidTestCase {
                 locationUri.toString(),
                 "content://com.example.android.sunshine.app/weather/%2FNorth%20Pole");
     }
+
+    /*
+        The arithmetic normalizeDate has to agree with the Time based one, including around the
+        DST changes of zones on both hemispheres.
+     */
+    public void testNormalizeDateWithTimeZone() {
+        String[] zoneIds = {"UTC", "America/Los_Angeles", "Europe/London", "Asia/Kolkata",
+                "Australia/Sydney", "Pacific/Kiritimati"};
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            for (String zoneId : zoneIds) {
+                TimeZone zone = TimeZone.getTimeZone(zoneId);
+                TimeZone.setDefault(zone);
+                // Every 7 hours across two years, which walks through every hour of the day
+                for (long date = 1388534400000L; date < 1451606400000L; date += 7 * 60 * 60 * 1000L) {
+                    assertEquals("Error: normalizeDate differs in " + zoneId + " for " + date,
+                            WeatherContract.normalizeDate(date), WeatherContract.normalizeDate(date, zone));
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.Vector;
+
+/*
+    Checks that the streaming parser produces exactly the rows the old JSONObject path did, and
+    reports how many bytes each path allocates per sync on recorded forecast fixtures.
+ */
+public class TestForecastJsonParser extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastJsonParser.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    // One recorded day per city, as returned by api.openweathermap.org/data/2.5/forecast/daily
+    private static final String[][] RECORDED_CITIES = {
+            {"Mountain View", "37.3861", "-122.0839",
+                    "{\"dt\":1457294400,\"temp\":{\"day\":17.63,\"min\":9.14,\"max\":18.2,\"night\":9.14," +
+                    "\"eve\":15.08,\"morn\":11.21},\"pressure\":1013.21,\"humidity\":78," +
+                    "\"weather\":[{\"id\":500,\"main\":\"Rain\",\"description\":\"light rain\",\"icon\":\"10d\"}]," +
+                    "\"speed\":3.41,\"deg\":174,\"clouds\":64,\"rain\":1.87}"},
+            {"London", "51.5085", "-0.1258",
+                    "{\"dt\":1457265600,\"temp\":{\"day\":7.45,\"min\":2.51,\"max\":8.05,\"night\":2.51," +
+                    "\"eve\":5.52,\"morn\":4.37},\"pressure\":1020.65,\"humidity\":89," +
+                    "\"weather\":[{\"id\":803,\"main\":\"Clouds\",\"description\":\"broken clouds\",\"icon\":\"04d\"}]," +
+                    "\"speed\":4.11,\"deg\":31,\"clouds\":76}"},
+            {"Mumbai", "19.0144", "72.8479",
+                    "{\"dt\":1457245800,\"temp\":{\"day\":31.04,\"min\":22.92,\"max\":31.04,\"night\":23.9," +
+                    "\"eve\":28.32,\"morn\":22.92},\"pressure\":1012.82,\"humidity\":53," +
+                    "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"sky is clear\",\"icon\":\"01d\"}]," +
+                    "\"speed\":2.96,\"deg\":293,\"clouds\":0}"},
+            {"Reykjavik", "64.1355", "-21.8954",
+                    "{\"dt\":1457265600,\"temp\":{\"day\":-1.2,\"min\":-4.83,\"max\":0.36,\"night\":-4.83," +
+                    "\"eve\":-2.11,\"morn\":-3.05},\"pressure\":998.41,\"humidity\":92," +
+                    "\"weather\":[{\"id\":601,\"main\":\"Snow\",\"description\":\"snow\",\"icon\":\"13d\"}]," +
+                    "\"speed\":9.72,\"deg\":48,\"clouds\":92,\"snow\":3.2}"}
+    };
+
+    static String buildFixture(String[] city, int numDays) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"city\":{\"id\":5375480,\"name\":\"").append(city[0])
+                .append("\",\"coord\":{\"lon\":").append(city[2])
+                .append(",\"lat\":").append(city[1])
+                .append("},\"country\":\"XX\",\"population\":0},\"cod\":\"200\",\"message\":0.0112,\"cnt\":")
+                .append(numDays).append(",\"list\":[");
+        for (int i = 0; i < numDays; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(city[3]);
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static InputStream streamOf(String json) {
+        try {
+            return new ByteArrayInputStream(json.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /*
+        The previous sync path: read the whole body into a StringBuffer, build a JSONObject tree
+        and copy the fields into ContentValues.
+     */
+    static Vector<ContentValues> parseWithJsonObject(InputStream in) throws IOException, JSONException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        StringBuffer buffer = new StringBuffer();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+        JSONObject forecastJson = new JSONObject(buffer.toString());
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+        JSONObject cityJson = forecastJson.getJSONObject("city");
+        cityJson.getString("name");
+        JSONObject cityCoord = cityJson.getJSONObject("coord");
+        cityCoord.getDouble("lat");
+        cityCoord.getDouble("lon");
+
+        Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, dayForecast.getInt("humidity"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, dayForecast.getDouble("pressure"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, dayForecast.getDouble("speed"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, dayForecast.getDouble("deg"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, temperatureObject.getDouble("max"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, temperatureObject.getDouble("min"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, weatherObject.getString("main"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherObject.getInt("id"));
+            cVVector.add(weatherValues);
+        }
+        return cVVector;
+    }
+
+    public void testParseMatchesJsonObject() throws Exception {
+        for (String[] city : RECORDED_CITIES) {
+            String json = buildFixture(city, 14);
+            ForecastJsonParser.Forecast forecast = ForecastJsonParser.parse(streamOf(json));
+            Vector<ContentValues> expected = parseWithJsonObject(streamOf(json));
+
+            assertEquals(HttpURLConnection.HTTP_OK, forecast.messageCode);
+            assertEquals(city[0], forecast.cityName);
+            assertEquals(Double.parseDouble(city[1]), forecast.cityLatitude);
+            assertEquals(Double.parseDouble(city[2]), forecast.cityLongitude);
+            assertEquals(expected.size(), forecast.days.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("Error: day " + i + " of " + city[0] + " differs from the JSONObject path",
+                        expected.get(i), forecast.days.get(i));
+            }
+        }
+    }
+
+    public void testParseErrorResponse() throws Exception {
+        ForecastJsonParser.Forecast forecast = ForecastJsonParser.parse(
+                streamOf("{\"cod\":\"404\",\"message\":\"Error: Not found city\"}"));
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, forecast.messageCode);
+        assertTrue(forecast.days.isEmpty());
+    }
+
+    public void testParseIncompleteDay() throws Exception {
+        try {
+            ForecastJsonParser.parse(streamOf("{\"city\":{\"name\":\"X\",\"coord\":{\"lat\":1,\"lon\":2}}," +
+                    "\"cod\":\"200\",\"list\":[{\"pressure\":1000}]}"));
+            fail("Error: a day without temperatures should not parse");
+        } catch (JSONException expected) {
+            // expected
+        }
+    }
+
+    public void testAllocationsPerSync() throws Exception {
+        int[] dayCounts = {14, 16};
+        for (int numDays : dayCounts) {
+            String[] fixtures = new String[RECORDED_CITIES.length];
+            for (int i = 0; i < fixtures.length; i++) {
+                fixtures[i] = buildFixture(RECORDED_CITIES[i], numDays);
+            }
+
+            long jsonObjectBytes = measureAllocatedBytes(fixtures, false);
+            long streamingBytes = measureAllocatedBytes(fixtures, true);
+
+            Log.i(LOG_TAG, numDays + "-day, " + fixtures.length + " cities: JSONObject "
+                    + jsonObjectBytes + " bytes/sync, streaming " + streamingBytes + " bytes/sync");
+            assertTrue("Error: the streaming parser should allocate less than the JSONObject path",
+                    streamingBytes < jsonObjectBytes);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private long measureAllocatedBytes(String[] fixtures, boolean streaming) throws Exception {
+        byte[][] bodies = new byte[fixtures.length][];
+        for (int i = 0; i < fixtures.length; i++) {
+            bodies[i] = fixtures[i].getBytes("UTF-8");
+        }
+        // Warm up so class loading and JIT are not charged to either path
+        runOnce(bodies, streaming);
+
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            runOnce(bodies, streaming);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocSize() / BENCHMARK_ITERATIONS;
+    }
+
+    private void runOnce(byte[][] bodies, boolean streaming) throws Exception {
+        for (byte[] body : bodies) {
+            if (streaming) {
+                ForecastJsonParser.parse(new ByteArrayInputStream(body));
+            } else {
+                parseWithJsonObject(new ByteArrayInputStream(body));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+
+/*
+    Exercises the conditional GET path against a stand-in for the OpenWeatherMap server that
+    runs on the loopback interface and honours If-None-Match.
+ */
+public class TestForecastResponseCache extends AndroidTestCase {
+
+    private static final String FIXTURE = TestForecastJsonParser.buildFixture(new String[]{
+            "North Pole", "64.7488", "-147.353",
+            "{\"temp\":{\"min\":-30.1,\"max\":-20.4},\"pressure\":1030.1,\"humidity\":70," +
+                    "\"weather\":[{\"id\":600,\"main\":\"Snow\"}],\"speed\":2.1,\"deg\":10}"}, 14);
+
+    private StandInServer mServer;
+    private File mCacheDir;
+    private ForecastResponseCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StandInServer();
+        mServer.start();
+        mCacheDir = new File(mContext.getCacheDir(), "test_forecast_responses");
+        deleteRecursively(mCacheDir);
+        mCache = new ForecastResponseCache(mCacheDir);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteRecursively(mCacheDir);
+        super.tearDown();
+    }
+
+    public void testNotModifiedAfterCommit() throws Exception {
+        URL url = mServer.url();
+
+        ForecastResponseCache.Response response = mCache.open(url);
+        assertFalse(response.isNotModified());
+        ForecastJsonParser.Forecast first = ForecastJsonParser.parse(response.getBody());
+        response.commit();
+        response.close();
+        assertNull("Error: the first request should be unconditional", mServer.lastIfNoneMatch);
+
+        response = mCache.open(url);
+        assertEquals("Error: the second request should carry the stored ETag",
+                StandInServer.ETAG, mServer.lastIfNoneMatch);
+        assertTrue("Error: an unchanged forecast should be answered with a 304", response.isNotModified());
+
+        // The stored body is still available for a replay
+        InputStream replay = response.getBody();
+        assertNotNull(replay);
+        ForecastJsonParser.Forecast replayed = ForecastJsonParser.parse(replay);
+        replay.close();
+        response.close();
+        assertEquals(first.days, replayed.days);
+        assertEquals(2, mServer.requests);
+    }
+
+    public void testUncommittedResponseIsNotCached() throws Exception {
+        URL url = mServer.url();
+
+        ForecastResponseCache.Response response = mCache.open(url);
+        ForecastJsonParser.parse(response.getBody());
+        // No commit, as when storing the forecast failed
+        response.close();
+
+        response = mCache.open(url);
+        assertNull("Error: validators of an uncommitted response should not be sent", mServer.lastIfNoneMatch);
+        assertFalse(response.isNotModified());
+        response.close();
+        assertNull(mCache.openCachedBody(url));
+    }
+
+    public void testInvalidate() throws Exception {
+        URL url = mServer.url();
+
+        ForecastResponseCache.Response response = mCache.open(url);
+        ForecastJsonParser.parse(response.getBody());
+        response.commit();
+        response.close();
+
+        mCache.invalidate(url);
+        response = mCache.open(url);
+        assertNull(mServer.lastIfNoneMatch);
+        assertFalse(response.isNotModified());
+        response.close();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /*
+        Just enough HTTP/1.1 to answer GETs with a fixed body and a fixed ETag, one connection
+        per request.
+     */
+    static class StandInServer extends Thread {
+        static final String ETAG = "\"forecast-v1\"";
+
+        private final ServerSocket mSocket;
+        volatile String lastIfNoneMatch;
+        volatile int requests;
+
+        StandInServer() throws IOException {
+            mSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        }
+
+        URL url() throws IOException {
+            return new URL("http://127.0.0.1:" + mSocket.getLocalPort() + "/data/2.5/forecast/daily?q=99705");
+        }
+
+        void shutdown() throws IOException {
+            mSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mSocket.isClosed()) {
+                try {
+                    Socket socket = mSocket.accept();
+                    try {
+                        handle(socket);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void handle(Socket socket) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String ifNoneMatch = null;
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).equalsIgnoreCase("If-None-Match")) {
+                    ifNoneMatch = line.substring(colon + 1).trim();
+                }
+            }
+            lastIfNoneMatch = ifNoneMatch;
+            requests++;
+
+            OutputStream out = socket.getOutputStream();
+            if (ETAG.equals(ifNoneMatch)) {
+                out.write(("HTTP/1.1 304 Not Modified\r\nETag: " + ETAG
+                        + "\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+            } else {
+                byte[] body = FIXTURE.getBytes("UTF-8");
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nETag: " + ETAG
+                        + "\r\nContent-Length: " + body.length
+                        + "\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+                out.write(body);
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.android.sunshine.app.wear;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.common.ForecastDelta;
+import com.example.android.sunshine.app.common.WeatherPayload;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestWearablePublisher extends AndroidTestCase {
+
+    private static final long WINDOW_MS = 100;
+    private static final long TIMEOUT_MS = 5000;
+    private static final int FIRST_DAY = 2457696;
+    private static final String LOG_FILE_NAME = "test_wear_forecast_log.bin";
+
+    private volatile double mMaxTemp = 21;
+    private volatile boolean mSendFails;
+    private final AtomicInteger mAttempts = new AtomicInteger();
+    private final List<byte[]> mSent = new ArrayList<byte[]>();
+
+    private final WearablePublisher.Source mSource = new WearablePublisher.Source() {
+        @Override
+        public WeatherPayload load() {
+            return new WeatherPayload(true, new int[]{FIRST_DAY, FIRST_DAY + 1}, new int[]{800, 800},
+                    new double[]{mMaxTemp, 18}, new double[]{12, 10});
+        }
+    };
+
+    private final WearablePublisher.Sender mSender = new WearablePublisher.Sender() {
+        @Override
+        public boolean send(byte[] delta) {
+            mAttempts.incrementAndGet();
+            if (mSendFails) {
+                return false;
+            }
+            synchronized (mSent) {
+                mSent.add(delta);
+            }
+            return true;
+        }
+    };
+
+    private File mLogFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLogFile = new File(getContext().getFilesDir(), LOG_FILE_NAME);
+        deleteLog();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteLog();
+        super.tearDown();
+    }
+
+    private void deleteLog() {
+        mLogFile.delete();
+        new File(mLogFile.getPath() + ".bak").delete();
+    }
+
+    private ForecastDelta sent(int index) {
+        synchronized (mSent) {
+            return ForecastDelta.fromByteArray(mSent.get(index));
+        }
+    }
+
+    private void waitForPublishes(final WearablePublisher publisher, final int published) throws Exception {
+        PollingCheck.check("Error: the publisher did not get through its requests", TIMEOUT_MS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return publisher.getSentCount() + publisher.getSuppressedCount() == published;
+                    }
+                });
+    }
+
+    private void waitForAttempts(final int attempts) throws Exception {
+        PollingCheck.check("Error: the publisher did not try to send", TIMEOUT_MS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mAttempts.get() == attempts;
+                    }
+                });
+    }
+
+    public void testBurstsAreCoalescedAndRepeatsSuppressed() throws Exception {
+        WearablePublisher publisher = new WearablePublisher(WINDOW_MS, mSource, mSender,
+                new ForecastVersionLog(mLogFile));
+
+        for (int i = 0; i < 5; i++) {
+            publisher.publish();
+        }
+        waitForPublishes(publisher, 1);
+        assertEquals(1, publisher.getSentCount());
+        assertEquals(4, publisher.getCoalescedCount());
+
+        // The same forecast again is not sent
+        publisher.publish();
+        waitForPublishes(publisher, 2);
+        assertEquals(1, publisher.getSuppressedCount());
+        assertEquals(1, mSent.size());
+
+        mMaxTemp = 25;
+        publisher.publish();
+        waitForPublishes(publisher, 3);
+        assertEquals(2, publisher.getSentCount());
+        assertEquals(25.0, sent(1).getDays().getMaxTemp(0));
+    }
+
+    public void testOnlyDaysChangedSinceTheAcknowledgedVersionAreSent() throws Exception {
+        WearablePublisher publisher = new WearablePublisher(WINDOW_MS, mSource, mSender,
+                new ForecastVersionLog(mLogFile));
+
+        publisher.publish();
+        waitForPublishes(publisher, 1);
+        ForecastDelta first = sent(0);
+        assertTrue(first.isFull());
+        assertEquals(2, first.getDays().getDayCount());
+
+        publisher.acknowledge(first.getVersion());
+        mMaxTemp = 25;
+        publisher.publish();
+        waitForPublishes(publisher, 2);
+        ForecastDelta second = sent(1);
+        assertEquals(first.getVersion(), second.getBaseVersion());
+        assertEquals("Only the changed day should be sent", 1, second.getDays().getDayCount());
+        assertEquals(FIRST_DAY, second.getDays().getJulianDay(0));
+
+        // A new log on the same file, as after a restart, remembers the acknowledged version
+        ForecastVersionLog log = new ForecastVersionLog(mLogFile);
+        assertEquals(second.getVersion(), log.getVersion());
+        assertEquals(first.getVersion(), log.getAckedVersion());
+        assertTrue("A watch with nothing should get everything", log.deltaSince(0).isFull());
+    }
+
+    public void testAFailedSendIsRetriedByTheNextPublish() throws Exception {
+        ForecastVersionLog log = new ForecastVersionLog(mLogFile);
+        WearablePublisher publisher = new WearablePublisher(WINDOW_MS, mSource, mSender, log);
+
+        mSendFails = true;
+        publisher.publish();
+        waitForAttempts(1);
+        assertEquals("Error: a forecast that was not sent should not be recorded", 0, log.getVersion());
+
+        mSendFails = false;
+        publisher.publish();
+        waitForPublishes(publisher, 1);
+        assertEquals("Error: the same forecast should not be suppressed after a failed send",
+                0, publisher.getSuppressedCount());
+        ForecastDelta sent = sent(0);
+        assertTrue(sent.isFull());
+        assertEquals(sent.getVersion(), log.getVersion());
+    }
+}
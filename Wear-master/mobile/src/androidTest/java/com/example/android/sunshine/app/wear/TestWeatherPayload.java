@@ -0,0 +1,96 @@
+package com.example.android.sunshine.app.wear;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.common.Constants;
+import com.example.android.sunshine.app.common.WeatherPayload;
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.ArrayList;
+
+/*
+    Compares the payload with the DataMap the phone used to send, today's weather as formatted
+    strings, and with a DataMap carrying the same two weeks, for size and round trip time.
+ */
+public class TestWeatherPayload extends AndroidTestCase {
+
+    private static final String LOG_TAG = TestWeatherPayload.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final int FIRST_DAY = 2457696;
+    private static final int ROUND_TRIPS = 1000;
+
+    private static WeatherPayload createPayload(int days) {
+        int[] julianDays = new int[days];
+        int[] weatherIds = new int[days];
+        double[] maxTemps = new double[days];
+        double[] minTemps = new double[days];
+        for (int i = 0; i < days; i++) {
+            julianDays[i] = FIRST_DAY + i;
+            weatherIds[i] = 500 + i;
+            maxTemps[i] = 21.5 + i;
+            minTemps[i] = 12.5 - i;
+        }
+        return new WeatherPayload(true, julianDays, weatherIds, maxTemps, minTemps);
+    }
+
+    private static DataMap createTodayDataMap() {
+        DataMap dataMap = new DataMap();
+        dataMap.putInt(Constants.WEATHER_KEY_ID, 500);
+        dataMap.putString(Constants.WEATHER_KEY_TEMP_MAX, "22\u00B0");
+        dataMap.putString(Constants.WEATHER_KEY_TEMP_MIN, "13\u00B0");
+        return dataMap;
+    }
+
+    private static DataMap createForecastDataMap() {
+        ArrayList<DataMap> days = new ArrayList<DataMap>();
+        for (int i = 0; i < DAYS; i++) {
+            DataMap day = new DataMap();
+            day.putInt("julian_day", FIRST_DAY + i);
+            day.putInt(Constants.WEATHER_KEY_ID, 500 + i);
+            day.putDouble(Constants.WEATHER_KEY_TEMP_MAX, 21.5 + i);
+            day.putDouble(Constants.WEATHER_KEY_TEMP_MIN, 12.5 - i);
+            days.add(day);
+        }
+        DataMap dataMap = new DataMap();
+        dataMap.putBoolean("metric", true);
+        dataMap.putDataMapArrayList("days", days);
+        return dataMap;
+    }
+
+    public void testSize() {
+        int todayPayload = createPayload(1).toByteArray().length;
+        int forecastPayload = createPayload(DAYS).toByteArray().length;
+        int todayDataMap = createTodayDataMap().toByteArray().length;
+        int forecastDataMap = createForecastDataMap().toByteArray().length;
+        Log.d(LOG_TAG, "Today: payload " + todayPayload + " bytes, DataMap " + todayDataMap
+                + " bytes; " + DAYS + " days: payload " + forecastPayload + " bytes, DataMap "
+                + forecastDataMap + " bytes");
+
+        assertTrue("Error: today's payload is larger than today's DataMap", todayPayload < todayDataMap);
+        assertTrue("Error: the forecast payload is larger than the forecast DataMap", forecastPayload < forecastDataMap);
+    }
+
+    public void testRoundTripTime() {
+        WeatherPayload payload = createPayload(DAYS);
+        DataMap dataMap = createForecastDataMap();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            WeatherPayload decoded = WeatherPayload.fromByteArray(payload.toByteArray());
+            assertEquals(DAYS, decoded.getDayCount());
+        }
+        long payloadNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            DataMap decoded = DataMap.fromByteArray(dataMap.toByteArray());
+            assertEquals(DAYS, decoded.getDataMapArrayList("days").size());
+        }
+        long dataMapNanos = System.nanoTime() - start;
+
+        Log.d(LOG_TAG, ROUND_TRIPS + " round trips of " + DAYS + " days: payload "
+                + payloadNanos / 1000000 + " ms, DataMap " + dataMapNanos / 1000000 + " ms");
+    }
+}
@@ -30,13 +30,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
  */
-public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+        implements ItemChoiceManager.ItemIdPositions {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
@@ -45,6 +48,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     private boolean mUseTodayLayout = true;
 
     private Cursor mCursor;
+    // What the rows show, formatted from mCursor
+    private List<ForecastRowModel> mRows = Collections.emptyList();
+    // The position of each row by its id, rebuilt with mRows
+    private ItemIdIndex mIdIndex = indexRows(mRows);
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
@@ -73,9 +80,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            mClickHandler.onClick(mRows.get(adapterPosition).getDate(), this);
             mICM.onClick(this);
         }
     }
@@ -88,6 +93,8 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        // Before the ItemChoiceManager observes the adapter, which can't change this after
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
@@ -124,65 +131,84 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        ForecastRowModel row = mRows.get(position);
+
+        // this enables better animations. even if we lose state due to a device rotation,
+        // the animator can use this to re-find the original view.  The row's date stays the
+        // same when rows above it come and go without it being bound again.
+        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + row.getDate());
+
+        bindDate(forecastAdapterViewHolder, row, position);
+        bindCondition(forecastAdapterViewHolder, row, position);
+        bindTemperatures(forecastAdapterViewHolder, row);
+
+        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+    }
+
+    @Override
+    public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(forecastAdapterViewHolder, position);
+            return;
+        }
+
+        // The row was bound before and only what changed since needs setting
+        int changes = 0;
+        for (Object payload : payloads) {
+            changes |= (Integer) payload;
+        }
+        ForecastRowModel row = mRows.get(position);
+        if ((changes & ForecastRowModel.CHANGED_DATE) != 0) {
+            bindDate(forecastAdapterViewHolder, row, position);
+        }
+        if ((changes & ForecastRowModel.CHANGED_CONDITION) != 0) {
+            bindCondition(forecastAdapterViewHolder, row, position);
+        }
+        if ((changes & ForecastRowModel.CHANGED_TEMPERATURES) != 0) {
+            bindTemperatures(forecastAdapterViewHolder, row);
+        }
+    }
+
+    private void bindDate(ForecastAdapterViewHolder forecastAdapterViewHolder, ForecastRowModel row, int position) {
+        boolean useLongToday = getItemViewType(position) == VIEW_TYPE_TODAY;
+        forecastAdapterViewHolder.mDateView.setText(row.getDateText(useLongToday));
+    }
+
+    private void bindCondition(ForecastAdapterViewHolder forecastAdapterViewHolder, ForecastRowModel row, int position) {
         int defaultImage;
-        boolean useLongToday;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
+                defaultImage = row.getArtResource();
                 break;
             default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
+                defaultImage = row.getIconResource();
         }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
+        if ( row.getArtUrl() == null ) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
             Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
+                    .load(row.getArtUrl())
                     .error(defaultImage)
                     .crossFade()
                     .into(forecastAdapterViewHolder.mIconView);
         }
 
-        // this enables better animations. even if we lose state due to a device rotation,
-        // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
-
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
-
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
-
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
-
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        forecastAdapterViewHolder.mDescriptionView.setText(row.getDescription());
+        forecastAdapterViewHolder.mDescriptionView.setContentDescription(row.getDescriptionContentDescription());
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
+    }
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
-
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+    private void bindTemperatures(ForecastAdapterViewHolder forecastAdapterViewHolder, ForecastRowModel row) {
+        forecastAdapterViewHolder.mHighTempView.setText(row.getHighText());
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(row.getHighContentDescription());
 
-        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+        forecastAdapterViewHolder.mLowTempView.setText(row.getLowText());
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(row.getLowContentDescription());
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
@@ -208,13 +234,58 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        return mRows.size();
+    }
+
+    /**
+     * Rows are identified by their date, which unlike the weather row's _id stays the same
+     * when a sync replaces the row.  The list only shows one location.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).getDate();
+    }
+
+    @Override
+    public int getPositionForItemId(long id) {
+        return mIdIndex.get(id);
+    }
+
+    /**
+     * @return the position of the row of the date, or RecyclerView.NO_POSITION if there is none
+     */
+    public int getPositionForDate(long date) {
+        return getPositionForItemId(date);
+    }
+
+    private static ItemIdIndex indexRows(List<ForecastRowModel> rows) {
+        ItemIdIndex index = new ItemIdIndex(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            index.put(rows.get(i).getDate(), i);
+        }
+        return index;
     }
 
     public void swapCursor(Cursor newCursor) {
         mCursor = newCursor;
-        notifyDataSetChanged();
+        List<ForecastRowModel> oldRows = mRows;
+        if (newCursor instanceof ForecastLoader.RowsCursor) {
+            mRows = ((ForecastLoader.RowsCursor) newCursor).getRows();
+        } else {
+            // Not from the loader: format the rows here
+            mRows = ForecastRowModel.fromCursor(mContext, newCursor);
+        }
+        mIdIndex = indexRows(mRows);
+        // Only the rows that differ from the last load are notified, so a sync that changed
+        // nothing on screen binds nothing again
+        ForecastDiff.dispatch(this, oldRows, mRows);
+        if (mUseTodayLayout && !oldRows.isEmpty() && !mRows.isEmpty()
+                && oldRows.get(0).compareKey(mRows.get(0)) != 0) {
+            // A new day moved another row into today's layout
+            notifyItemChanged(0);
+        }
+        // Once for the whole load, the checked rows are looked up in the new index
+        mICM.onDataSetSwapped();
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
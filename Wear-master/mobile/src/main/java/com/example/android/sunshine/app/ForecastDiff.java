@@ -0,0 +1,111 @@
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Tells a {@link RecyclerView.Adapter} how one load of the forecast list became the next, so
+ * only the rows that were added, removed or changed are animated and bound again.
+ *
+ * Rows are matched by {@link ForecastRowModel#compareKey}, walking both lists in the order the
+ * loader sorts them in.  A matched row whose content changed is notified with its
+ * {@link ForecastRowModel#changesFrom} flags as the payload, so the adapter only sets the views
+ * that changed.  Neighbouring rows with the same kind of change are notified as one range.
+ */
+final class ForecastDiff {
+
+    private static final int NONE = 0;
+    private static final int INSERT = 1;
+    private static final int REMOVE = 2;
+    private static final int CHANGE = 3;
+
+    private final RecyclerView.Adapter<?> mAdapter;
+
+    // The range not yet notified
+    private int mPendingType = NONE;
+    private int mPendingStart;
+    private int mPendingCount;
+    private int mPendingChanges;
+
+    private ForecastDiff(RecyclerView.Adapter<?> adapter) {
+        mAdapter = adapter;
+    }
+
+    /**
+     * Notifies the adapter, which already holds the new rows, of the difference from the old.
+     */
+    static void dispatch(RecyclerView.Adapter<?> adapter, List<ForecastRowModel> oldRows,
+                         List<ForecastRowModel> newRows) {
+        new ForecastDiff(adapter).run(oldRows, newRows);
+    }
+
+    private void run(List<ForecastRowModel> oldRows, List<ForecastRowModel> newRows) {
+        int oldIndex = 0;
+        int newIndex = 0;
+        // Where the next row goes in the list as notified so far
+        int position = 0;
+        while (oldIndex < oldRows.size() || newIndex < newRows.size()) {
+            int order;
+            if (oldIndex == oldRows.size()) {
+                order = 1;
+            } else if (newIndex == newRows.size()) {
+                order = -1;
+            } else {
+                order = oldRows.get(oldIndex).compareKey(newRows.get(newIndex));
+            }
+
+            if (order < 0) {
+                // The old row comes before any new one, so it's gone
+                add(REMOVE, position, 0);
+                oldIndex++;
+            } else if (order > 0) {
+                add(INSERT, position, 0);
+                newIndex++;
+                position++;
+            } else {
+                int changes = newRows.get(newIndex).changesFrom(oldRows.get(oldIndex));
+                if (changes != 0) {
+                    add(CHANGE, position, changes);
+                } else {
+                    flush();
+                }
+                oldIndex++;
+                newIndex++;
+                position++;
+            }
+        }
+        flush();
+    }
+
+    private void add(int type, int position, int changes) {
+        if (type == mPendingType) {
+            // Removed rows all leave from the same position, the others follow each other
+            int next = type == REMOVE ? mPendingStart : mPendingStart + mPendingCount;
+            if (position == next && changes == mPendingChanges) {
+                mPendingCount++;
+                return;
+            }
+        }
+        flush();
+        mPendingType = type;
+        mPendingStart = position;
+        mPendingCount = 1;
+        mPendingChanges = changes;
+    }
+
+    private void flush() {
+        switch (mPendingType) {
+            case INSERT:
+                mAdapter.notifyItemRangeInserted(mPendingStart, mPendingCount);
+                break;
+            case REMOVE:
+                mAdapter.notifyItemRangeRemoved(mPendingStart, mPendingCount);
+                break;
+            case CHANGE:
+                mAdapter.notifyItemRangeChanged(mPendingStart, mPendingCount, mPendingChanges);
+                break;
+        }
+        mPendingType = NONE;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+import java.util.List;
+
+/**
+ * Loads the forecast list's cursor and, still on the loader's thread, the
+ * {@link ForecastRowModel}s the adapter binds, delivered together as a {@link RowsCursor}.
+ */
+class ForecastLoader extends CursorLoader {
+
+    /**
+     * The loaded cursor, with the rows built from it.
+     */
+    static final class RowsCursor extends CursorWrapper {
+        private final List<ForecastRowModel> mRows;
+
+        RowsCursor(Cursor cursor, List<ForecastRowModel> rows) {
+            super(cursor);
+            mRows = rows;
+        }
+
+        List<ForecastRowModel> getRows() {
+            return mRows;
+        }
+    }
+
+    ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+                   String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        return new RowsCursor(cursor, ForecastRowModel.fromCursor(getContext(), cursor));
+    }
+}
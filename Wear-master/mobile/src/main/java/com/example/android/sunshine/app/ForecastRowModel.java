@@ -0,0 +1,201 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A row of the forecast list, with everything {@link ForecastAdapter} shows already formatted,
+ * so binding a row only sets views.
+ *
+ * Rows are built from the loader's cursor off the main thread by {@link ForecastLoader}.
+ */
+final class ForecastRowModel {
+
+    // What changed in a row, passed to the adapter as the payload of a change
+    static final int CHANGED_DATE = 1;
+    static final int CHANGED_CONDITION = 1 << 1;
+    static final int CHANGED_TEMPERATURES = 1 << 2;
+
+    private final long mId;
+    private final long mLocationId;
+    private final long mDate;
+    private final int mWeatherId;
+    private final String mDateText;
+    private final String mLongDateText;
+    private final String mDescription;
+    private final String mDescriptionContentDescription;
+    private final String mHighText;
+    private final String mHighContentDescription;
+    private final String mLowText;
+    private final String mLowContentDescription;
+    private final int mIconResource;
+    private final int mArtResource;
+    private final String mArtUrl;
+    private final int mContentHash;
+
+    private ForecastRowModel(Context context, Cursor cursor, boolean isMetric, boolean usingLocalGraphics) {
+        mId = cursor.getLong(ForecastFragment.COL_WEATHER_ID);
+        mLocationId = cursor.getLong(ForecastFragment.COL_LOCATION_ID);
+        mDate = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        mWeatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        mDateText = Utility.getFriendlyDayString(context, mDate, false);
+        mLongDateText = Utility.getFriendlyDayString(context, mDate, true);
+
+        mDescription = Utility.getStringForWeatherCondition(context, mWeatherId);
+        mDescriptionContentDescription = context.getString(R.string.a11y_forecast, mDescription);
+
+        mHighText = Utility.formatTemperature(context, cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP), isMetric);
+        mHighContentDescription = context.getString(R.string.a11y_high_temp, mHighText);
+        mLowText = Utility.formatTemperature(context, cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP), isMetric);
+        mLowContentDescription = context.getString(R.string.a11y_low_temp, mLowText);
+
+        mIconResource = Utility.getIconResourceForWeatherCondition(mWeatherId);
+        mArtResource = Utility.getArtResourceForWeatherCondition(mWeatherId);
+        mArtUrl = usingLocalGraphics ? null : Utility.getArtUrlForWeatherCondition(context, mWeatherId);
+
+        int hash = mDateText.hashCode();
+        hash = 31 * hash + mLongDateText.hashCode();
+        hash = 31 * hash + mDescription.hashCode();
+        hash = 31 * hash + mHighText.hashCode();
+        hash = 31 * hash + mLowText.hashCode();
+        hash = 31 * hash + mIconResource;
+        hash = 31 * hash + mArtResource;
+        mContentHash = 31 * hash + (mArtUrl != null ? mArtUrl.hashCode() : 0);
+    }
+
+    /**
+     * Builds a row for each row of the cursor, which has the columns of
+     * {@link ForecastFragment}'s projection.  The cursor is left past its last row.
+     */
+    static List<ForecastRowModel> fromCursor(Context context, Cursor cursor) {
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+        // Settings are read once for all the rows
+        boolean isMetric = Utility.isMetric(context);
+        boolean usingLocalGraphics = Utility.usingLocalGraphics(context);
+        List<ForecastRowModel> rows = new ArrayList<ForecastRowModel>(cursor.getCount());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            rows.add(new ForecastRowModel(context, cursor, isMetric, usingLocalGraphics));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    long getId() {
+        return mId;
+    }
+
+    long getLocationId() {
+        return mLocationId;
+    }
+
+    long getDate() {
+        return mDate;
+    }
+
+    int getWeatherId() {
+        return mWeatherId;
+    }
+
+    /**
+     * @param longToday whether today reads "Today, June 24" rather than "Today"
+     */
+    String getDateText(boolean longToday) {
+        return longToday ? mLongDateText : mDateText;
+    }
+
+    String getDescription() {
+        return mDescription;
+    }
+
+    String getDescriptionContentDescription() {
+        return mDescriptionContentDescription;
+    }
+
+    String getHighText() {
+        return mHighText;
+    }
+
+    String getHighContentDescription() {
+        return mHighContentDescription;
+    }
+
+    String getLowText() {
+        return mLowText;
+    }
+
+    String getLowContentDescription() {
+        return mLowContentDescription;
+    }
+
+    // The small icon of the future days
+    int getIconResource() {
+        return mIconResource;
+    }
+
+    // The large art of today's row
+    int getArtResource() {
+        return mArtResource;
+    }
+
+    /**
+     * @return the art to load, or null to show the local graphics
+     */
+    String getArtUrl() {
+        return mArtUrl;
+    }
+
+    /**
+     * Orders rows by location, then day, which is the order the loader sorts the rows of one
+     * location in.  Rows that compare equal are the same row of the list.
+     */
+    int compareKey(ForecastRowModel other) {
+        if (mLocationId != other.mLocationId) {
+            return mLocationId < other.mLocationId ? -1 : 1;
+        }
+        return mDate < other.mDate ? -1 : (mDate == other.mDate ? 0 : 1);
+    }
+
+    /**
+     * @return which of the CHANGED_ flags this row differs in from the same row of an earlier
+     * load, or 0 if they show the same
+     */
+    int changesFrom(ForecastRowModel old) {
+        if (mContentHash == old.mContentHash && sameContent(old)) {
+            return 0;
+        }
+        int changes = 0;
+        if (!mDateText.equals(old.mDateText) || !mLongDateText.equals(old.mLongDateText)) {
+            changes |= CHANGED_DATE;
+        }
+        if (!mDescription.equals(old.mDescription) || mIconResource != old.mIconResource
+                || mArtResource != old.mArtResource || !equals(mArtUrl, old.mArtUrl)) {
+            changes |= CHANGED_CONDITION;
+        }
+        if (!mHighText.equals(old.mHighText) || !mLowText.equals(old.mLowText)) {
+            changes |= CHANGED_TEMPERATURES;
+        }
+        return changes;
+    }
+
+    private boolean sameContent(ForecastRowModel old) {
+        return mDateText.equals(old.mDateText)
+                && mLongDateText.equals(old.mLongDateText)
+                && mDescription.equals(old.mDescription)
+                && mHighText.equals(old.mHighText)
+                && mLowText.equals(old.mLowText)
+                && mIconResource == old.mIconResource
+                && mArtResource == old.mArtResource
+                && equals(mArtUrl, old.mArtUrl);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -28,8 +28,11 @@ import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which positions have been selected.  With stable
+ * ids, the checked items are found again when the data set changes: on notifyDataSetChanged, or,
+ * for an adapter that notifies a new data set range by range, once it calls
+ * {@link #onDataSetSwapped()} after the last range.  Adapters implementing
+ * {@link ItemIdPositions} have the checked items looked up rather than searched for.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
@@ -41,11 +44,22 @@ public class ItemChoiceManager {
         @Override
         public void onChanged() {
             super.onChanged();
-            if (mAdapter != null && mAdapter.hasStableIds())
-                confirmCheckedPositionsById(mAdapter.getItemCount());
+            onDataSetSwapped();
         }
     };
 
+    /**
+     * Implemented by adapters with stable ids that can find the position of an id without
+     * scanning, so checked items are found however far they moved.
+     */
+    public interface ItemIdPositions {
+        /**
+         * @return the position of the item with the id, or RecyclerView.NO_POSITION if there
+         * is none
+         */
+        int getPositionForItemId(long id);
+    }
+
     private ItemChoiceManager() {
     }
 
@@ -53,6 +67,7 @@ public class ItemChoiceManager {
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
     /**
@@ -109,6 +124,13 @@ public class ItemChoiceManager {
             case AbsListView.CHOICE_MODE_MULTIPLE: {
                 boolean checked = mCheckStates.get(position, false);
                 mCheckStates.put(position, !checked);
+                if (mAdapter.hasStableIds()) {
+                    if (checked) {
+                        mCheckedIdStates.delete(mAdapter.getItemId(position));
+                    } else {
+                        mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                    }
+                }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
@@ -154,10 +176,24 @@ public class ItemChoiceManager {
         mCheckedIdStates.clear();
     }
 
+    /**
+     * Finds the checked items in a new data set.  The range notifications of a new data set are
+     * not followed one by one, so an adapter sending them calls this once, after the last one.
+     */
+    public void onDataSetSwapped() {
+        if (mAdapter != null && mAdapter.hasStableIds())
+            confirmCheckedPositionsById(mAdapter.getItemCount());
+    }
+
     void confirmCheckedPositionsById(int oldItemCount) {
         // Clear out the positional check states, we'll rebuild it below from IDs.
         mCheckStates.clear();
 
+        if (mAdapter instanceof ItemIdPositions) {
+            confirmCheckedPositionsByIndex((ItemIdPositions) mAdapter);
+            return;
+        }
+
         for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
             final long id = mCheckedIdStates.keyAt(checkedIndex);
             final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
@@ -188,6 +224,19 @@ public class ItemChoiceManager {
         }
     }
 
+    private void confirmCheckedPositionsByIndex(ItemIdPositions positions) {
+        for (int checkedIndex = mCheckedIdStates.size() - 1; checkedIndex >= 0; checkedIndex--) {
+            final int position = positions.getPositionForItemId(mCheckedIdStates.keyAt(checkedIndex));
+            if (position == RecyclerView.NO_POSITION) {
+                // The item is no longer in the adapter, uncheck it.
+                mCheckedIdStates.removeAt(checkedIndex);
+            } else {
+                mCheckStates.put(position, true);
+                mCheckedIdStates.setValueAt(checkedIndex, position);
+            }
+        }
+    }
+
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
         boolean checked = isItemChecked(position);
         if (vh.itemView instanceof Checkable) {
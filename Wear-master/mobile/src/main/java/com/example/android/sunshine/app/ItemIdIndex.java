@@ -0,0 +1,61 @@
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Maps the stable ids of a list's items to their positions, in open addressed primitive arrays,
+ * so finding an item neither scans the list nor boxes its id.  An index is built once for each
+ * data set and not changed after.
+ */
+final class ItemIdIndex {
+
+    private final long[] mIds;
+    // The position plus one, so 0 marks an empty slot
+    private final int[] mPositions;
+    private final int mMask;
+    private int mSize;
+
+    /**
+     * @param expectedSize how many ids will be put in the index
+     */
+    ItemIdIndex(int expectedSize) {
+        // At most half full, so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        mIds = new long[capacity];
+        mPositions = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    void put(long id, int position) {
+        int slot = slotOf(id);
+        if (mPositions[slot] == 0) {
+            if (2 * (mSize + 1) > mIds.length) {
+                throw new IllegalStateException("Index full at " + mSize + " ids");
+            }
+            mIds[slot] = id;
+            mSize++;
+        }
+        mPositions[slot] = position + 1;
+    }
+
+    /**
+     * @return the position of the item with the id, or {@link RecyclerView#NO_POSITION}
+     */
+    int get(long id) {
+        return mPositions[slotOf(id)] - 1;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    // The slot holding the id, or the empty slot it would go in
+    private int slotOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mMask;
+        while (mPositions[slot] != 0 && mIds[slot] != id) {
+            slot = (slot + 1) & mMask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.common.WeatherConditions;
+
+/**
+ * The settings {@link Utility} reads for every list row, widget row, notification and wearable
+ * payload, read from the default SharedPreferences once and kept until one of them changes.
+ *
+ * Like {@link com.example.android.sunshine.app.data.ForecastSnapshot}, a snapshot is immutable
+ * and swapped in whole, so readers get the current one with a volatile read and never lock.
+ * A listener on the preferences swaps in a new one whenever one of its settings changes.
+ */
+final class SettingsSnapshot {
+
+    private static final Object sLock = new Object();
+    private static volatile SettingsSnapshot sCurrent;
+    // SharedPreferences only holds its listeners weakly
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    private final String mLocation;
+    private final boolean mMetric;
+    private final WeatherConditions.ArtPack mArtUrls;
+    private final boolean mUsingLocalGraphics;
+
+    private SettingsSnapshot(Context context, SharedPreferences prefs) {
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric).equals(metric);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        String artPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        mArtUrls = WeatherConditions.getArtPack(artPack);
+        mUsingLocalGraphics = artPack.equals(sunshineArtPack);
+    }
+
+    static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sCurrent;
+        if (snapshot == null) {
+            snapshot = init(context.getApplicationContext());
+        }
+        return snapshot;
+    }
+
+    private static SettingsSnapshot init(final Context context) {
+        synchronized (sLock) {
+            if (sCurrent == null) {
+                final String locationKey = context.getString(R.string.pref_location_key);
+                final String unitsKey = context.getString(R.string.pref_units_key);
+                final String artPackKey = context.getString(R.string.pref_art_pack_key);
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        if (locationKey.equals(key) || unitsKey.equals(key) || artPackKey.equals(key)) {
+                            rebuild(context);
+                        }
+                    }
+                };
+                // Listening before reading, so a change in between is not missed
+                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+                sCurrent = new SettingsSnapshot(context, prefs);
+            }
+            return sCurrent;
+        }
+    }
+
+    /**
+     * Reads the settings again.  Other listeners on the preferences may be told of a change
+     * before this class is, and call this first when they read the settings straight away.
+     */
+    static void rebuild(Context context) {
+        context = context.getApplicationContext();
+        synchronized (sLock) {
+            sCurrent = new SettingsSnapshot(context, PreferenceManager.getDefaultSharedPreferences(context));
+        }
+    }
+
+    String getLocation() {
+        return mLocation;
+    }
+
+    boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return the art pack's URLs, formatted once for the pack
+     */
+    WeatherConditions.ArtPack getArtUrls() {
+        return mArtUrls;
+    }
+
+    boolean usingLocalGraphics() {
+        return mUsingLocalGraphics;
+    }
+}
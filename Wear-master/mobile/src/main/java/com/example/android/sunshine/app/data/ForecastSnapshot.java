@@ -0,0 +1,237 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable copy of the forecast of every location, from today on, for the readers that
+ * only want today's weather: the widget, Muzei, the notification and the wearable.
+ *
+ * {@link WeatherProvider} builds a new snapshot once the transaction of each sync, or any other
+ * write that changes the forecast, has committed, and swaps it in whole, so readers get the latest
+ * one with a volatile read and never lock.  A reader that does not find its location in it, a
+ * process that has not synced yet for instance, falls back to the provider.
+ */
+public final class ForecastSnapshot {
+
+    private static final ForecastSnapshot EMPTY =
+            new ForecastSnapshot(0, Collections.<String, LocationForecast>emptyMap());
+
+    private static volatile ForecastSnapshot sCurrent = EMPTY;
+
+    private static final String[] SNAPSHOT_COLUMNS = {
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_LOCATION_SETTING = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_WEATHER_ID = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+    private static final int INDEX_MAX_TEMP = 4;
+    private static final int INDEX_MIN_TEMP = 5;
+
+    private final long mVersion;
+    private final Map<String, LocationForecast> mLocations;
+
+    private ForecastSnapshot(long version, Map<String, LocationForecast> locations) {
+        mVersion = version;
+        mLocations = locations;
+    }
+
+    public static ForecastSnapshot current() {
+        return sCurrent;
+    }
+
+    /**
+     * Incremented with every snapshot swapped in; 0 until the first one is built.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return the forecast of the location, or null if the snapshot has none
+     */
+    public LocationForecast get(String locationSetting) {
+        return mLocations.get(locationSetting);
+    }
+
+    /**
+     * Today's weather for the location, from the snapshot when it has the location and from the
+     * provider otherwise.  Both answer with the first day from today on, so a gap in the data or
+     * a snapshot built before midnight give the same day the query would.
+     *
+     * @return the forecast of the first day from today on, or null if there is none
+     */
+    public static Day getToday(Context context, String locationSetting) {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        LocationForecast forecast = sCurrent.get(locationSetting);
+        if (forecast != null) {
+            // The snapshot holds every day of the location from the day it was built on
+            int index = forecast.indexOfFirstDayFrom(today);
+            return index != -1 ? forecast.getDay(index) : null;
+        }
+
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, today);
+        Cursor cursor = context.getContentResolver().query(weatherUri,
+                new String[]{
+                        WeatherContract.WeatherEntry.COLUMN_DATE,
+                        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+                },
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new Day(cursor.getLong(0), cursor.getInt(1), cursor.getString(2),
+                    cursor.getDouble(3), cursor.getDouble(4));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads the forecast of every location from today on and swaps it in.  Called by the
+     * provider once a change to the forecast has committed, once per sync; runs one at a time,
+     * so the last snapshot swapped in is always built from the last commit.
+     */
+    static synchronized void rebuild(SQLiteDatabase db) {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Cursor cursor = WeatherProvider.sWeatherByLocationSettingQueryBuilder.query(db,
+                SNAPSHOT_COLUMNS,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(today)},
+                null,
+                null,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + ", " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        Map<String, LocationForecast> locations = new HashMap<String, LocationForecast>();
+        try {
+            int start = 0;
+            while (start < cursor.getCount()) {
+                cursor.moveToPosition(start);
+                String locationSetting = cursor.getString(INDEX_LOCATION_SETTING);
+                int end = start + 1;
+                while (cursor.moveToPosition(end)
+                        && locationSetting.equals(cursor.getString(INDEX_LOCATION_SETTING))) {
+                    end++;
+                }
+                locations.put(locationSetting, new LocationForecast(cursor, start, end));
+                start = end;
+            }
+        } finally {
+            cursor.close();
+        }
+        sCurrent = new ForecastSnapshot(sCurrent.mVersion + 1, Collections.unmodifiableMap(locations));
+    }
+
+    /**
+     * The days of one location in date order, one array per column.
+     */
+    public static final class LocationForecast {
+        private final long[] mDates;
+        private final int[] mWeatherIds;
+        private final String[] mShortDescs;
+        private final double[] mMaxTemps;
+        private final double[] mMinTemps;
+
+        private LocationForecast(Cursor cursor, int start, int end) {
+            int count = end - start;
+            mDates = new long[count];
+            mWeatherIds = new int[count];
+            mShortDescs = new String[count];
+            mMaxTemps = new double[count];
+            mMinTemps = new double[count];
+            for (int i = 0; i < count; i++) {
+                cursor.moveToPosition(start + i);
+                mDates[i] = cursor.getLong(INDEX_DATE);
+                mWeatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+                mShortDescs[i] = cursor.getString(INDEX_SHORT_DESC);
+                mMaxTemps[i] = cursor.getDouble(INDEX_MAX_TEMP);
+                mMinTemps[i] = cursor.getDouble(INDEX_MIN_TEMP);
+            }
+        }
+
+        public int getCount() {
+            return mDates.length;
+        }
+
+        /**
+         * @param date a normalized date
+         * @return the index of the first day on or after the date, the one a query from the
+         * date starts with, or -1 if there is none
+         */
+        public int indexOfFirstDayFrom(long date) {
+            int index = Arrays.binarySearch(mDates, date);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < mDates.length ? index : -1;
+        }
+
+        public long getDate(int index) {
+            return mDates[index];
+        }
+
+        public int getWeatherId(int index) {
+            return mWeatherIds[index];
+        }
+
+        public String getShortDesc(int index) {
+            return mShortDescs[index];
+        }
+
+        public double getMaxTemp(int index) {
+            return mMaxTemps[index];
+        }
+
+        public double getMinTemp(int index) {
+            return mMinTemps[index];
+        }
+
+        public Day getDay(int index) {
+            return new Day(mDates[index], mWeatherIds[index], mShortDescs[index],
+                    mMaxTemps[index], mMinTemps[index]);
+        }
+    }
+
+    /**
+     * The forecast of a single day.
+     */
+    public static final class Day {
+        public final long date;
+        public final int weatherId;
+        public final String shortDesc;
+        public final double maxTemp;
+        public final double minTemp;
+
+        Day(long date, int weatherId, String shortDesc, double maxTemp, double minTemp) {
+            this.date = date;
+            this.weatherId = weatherId;
+            this.shortDesc = shortDesc;
+            this.maxTemp = maxTemp;
+            this.minTemp = minTemp;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of the weather database schema, from version {@code toVersion - 1} to
+ * {@code toVersion}.
+ *
+ * Steps run in order inside the upgrade transaction of {@link WeatherDbHelper}, so a step
+ * either lands completely or the whole upgrade falls back to recreating the database.  A step
+ * must leave the schema exactly as {@link WeatherDbHelper#onCreate} would create it for its
+ * version.
+ */
+abstract class Migration {
+
+    final int toVersion;
+
+    Migration(int toVersion) {
+        this.toVersion = toVersion;
+    }
+
+    abstract void migrate(SQLiteDatabase db);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " (to version " + toVersion + ")";
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the time of a sync goes.
+ *
+ * A {@link Recorder} follows one sync and collects the latency of each stage into a histogram,
+ * along with the bytes received and what the process allocated meanwhile.  Once the sync is done
+ * the recorder is appended to a ring buffer file holding the last {@link #CAPACITY} syncs, which
+ * {@link WeatherProvider} serves under {@link WeatherContract.SyncMetricsEntry}.  It lives with
+ * the provider, which reads the file, and the sync adapter records into it.
+ *
+ * Stages that run once per location, in parallel in a batch sync, add up: their total is the
+ * time spent in them over all locations, not wall time.
+ */
+public final class SyncMetrics {
+    private static final String LOG_TAG = SyncMetrics.class.getSimpleName();
+
+    // DNS lookup and connect; HttpURLConnection does them in one call
+    public static final int STAGE_CONNECT = 0;
+    // Request sent until the status line of the response is read
+    public static final int STAGE_FIRST_BYTE = 1;
+    // Reading the body, off the socket or the response cache
+    public static final int STAGE_BODY_READ = 2;
+    // Parsing the JSON, the reads it waits for excluded
+    public static final int STAGE_PARSE = 3;
+    // Storing the forecasts
+    public static final int STAGE_DB_TRANSACTION = 4;
+    // Moving the expired rows into the history
+    public static final int STAGE_ARCHIVE = 5;
+    public static final int STAGE_FANOUT_WIDGETS = 6;
+    public static final int STAGE_FANOUT_MUZEI = 7;
+    public static final int STAGE_FANOUT_WEARABLE = 8;
+    public static final int STAGE_FANOUT_NOTIFICATION = 9;
+
+    public static final String[] STAGE_NAMES = {
+            "connect",
+            "first_byte",
+            "body_read",
+            "parse",
+            "db_transaction",
+            "archive",
+            "fanout_widgets",
+            "fanout_muzei",
+            "fanout_wearable",
+            "fanout_notification"
+    };
+
+    public static final int STAGE_COUNT = STAGE_NAMES.length;
+
+    // Bucket 0 counts samples under 1 ms, bucket i those under 2^i ms, the last one the rest
+    public static final int BUCKET_COUNT = 16;
+
+    // Number of syncs the file keeps
+    static final int CAPACITY = 32;
+
+    private static final String FILE_NAME = "sync_metrics.bin";
+
+    private static final int MAGIC = 0x53594e43;
+    private static final int FORMAT_VERSION = 1;
+    // magic, format version, next slot, records written
+    private static final int HEADER_SIZE = 4 * 4;
+    private static final int STAGE_SIZE = 4 + 8 + 8 + 4 * BUCKET_COUNT;
+    private static final int RECORD_SIZE = 8 + 8 + 4 + 8 + 8 + 4 + STAGE_COUNT * STAGE_SIZE;
+
+    private SyncMetrics() {
+    }
+
+    /**
+     * @return the upper bound in milliseconds of the given bucket, or Long.MAX_VALUE for the last
+     */
+    public static long getBucketUpperBoundMillis(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    static int bucketFor(long micros) {
+        long millis = micros / 1000;
+        int bucket = 0;
+        while (millis >= (1L << bucket) && bucket < BUCKET_COUNT - 1) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Collects the metrics of one sync.  Safe to use from the fetch threads of a batch sync.
+     */
+    public static class Recorder {
+        private final long mStartedAt = System.currentTimeMillis();
+        private final long mStartNanos = System.nanoTime();
+        private final long mStartAllocatedBytes = allocatedBytes();
+        private final int mStartGcCount = gcCount();
+
+        private final int[] mCounts = new int[STAGE_COUNT];
+        private final long[] mTotalMicros = new long[STAGE_COUNT];
+        private final long[] mMaxMicros = new long[STAGE_COUNT];
+        private final int[][] mBuckets = new int[STAGE_COUNT][BUCKET_COUNT];
+        private int mLocations;
+        private long mBytesReceived;
+
+        private long mWallMicros = -1;
+        private long mAllocatedBytes = -1;
+        private int mGcCount = -1;
+
+        public synchronized void record(int stage, long nanos) {
+            long micros = nanos / 1000;
+            mCounts[stage]++;
+            mTotalMicros[stage] += micros;
+            mMaxMicros[stage] = Math.max(mMaxMicros[stage], micros);
+            mBuckets[stage][bucketFor(micros)]++;
+        }
+
+        public synchronized void addLocations(int locations) {
+            mLocations += locations;
+        }
+
+        public synchronized void addBytesReceived(long bytes) {
+            mBytesReceived += bytes;
+        }
+
+        /**
+         * Wraps a body so that the time spent reading it and its size are recorded once it is
+         * closed.
+         */
+        public MeteredInputStream meter(InputStream in) {
+            return new MeteredInputStream(in, this);
+        }
+
+        /**
+         * Stops the clock.  Allocations are those of the whole process, and only known from
+         * Marshmallow on; -1 before.
+         */
+        synchronized void finish() {
+            mWallMicros = (System.nanoTime() - mStartNanos) / 1000;
+            if (mStartAllocatedBytes >= 0) {
+                mAllocatedBytes = allocatedBytes() - mStartAllocatedBytes;
+                mGcCount = gcCount() - mStartGcCount;
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder("Sync metrics: ")
+                    .append(mWallMicros / 1000).append(" ms, ")
+                    .append(mLocations).append(" locations, ")
+                    .append(mBytesReceived).append(" bytes, ")
+                    .append(mAllocatedBytes).append(" bytes allocated, ")
+                    .append(mGcCount).append(" GCs");
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                if (mCounts[stage] > 0) {
+                    sb.append("; ").append(STAGE_NAMES[stage]).append(' ')
+                            .append(mTotalMicros[stage] / 1000).append(" ms/")
+                            .append(mCounts[stage]);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Times the reads of a stream and counts its bytes, recording both on close.
+     */
+    public static class MeteredInputStream extends FilterInputStream {
+        private final Recorder mRecorder;
+        private long mReadNanos;
+        private long mBytes;
+        private boolean mClosed;
+
+        MeteredInputStream(InputStream in, Recorder recorder) {
+            super(in);
+            mRecorder = recorder;
+        }
+
+        /**
+         * @return the time spent in read so far, to take out of the time of whoever consumes
+         * the stream
+         */
+        public long getReadNanos() {
+            return mReadNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            mReadNanos += System.nanoTime() - start;
+            if (b != -1) mBytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(buffer, offset, count);
+            mReadNanos += System.nanoTime() - start;
+            if (read > 0) mBytes += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!mClosed) {
+                mClosed = true;
+                mRecorder.record(STAGE_BODY_READ, mReadNanos);
+                mRecorder.addBytesReceived(mBytes);
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * One sync as read back from the file.
+     */
+    public static class Record {
+        public long startedAt;
+        public long wallMicros;
+        public int locations;
+        public long bytesReceived;
+        public long allocatedBytes;
+        public int gcCount;
+        public final int[] counts = new int[STAGE_COUNT];
+        public final long[] totalMicros = new long[STAGE_COUNT];
+        public final long[] maxMicros = new long[STAGE_COUNT];
+        public final int[][] buckets = new int[STAGE_COUNT][BUCKET_COUNT];
+    }
+
+    public static File getFile(Context context) {
+        return context.getFileStreamPath(FILE_NAME);
+    }
+
+    /**
+     * Finishes the recorder and appends it to the file, overwriting the oldest sync once the
+     * file is full.  Errors are logged and otherwise ignored, metrics are not worth failing a
+     * sync for.
+     */
+    public static void append(Context context, Recorder recorder) {
+        recorder.finish();
+        Log.d(LOG_TAG, recorder.toString());
+        try {
+            append(getFile(context), recorder);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing sync metrics", e);
+            return;
+        }
+        context.getContentResolver().notifyChange(WeatherContract.SyncMetricsEntry.CONTENT_URI, null);
+    }
+
+    static synchronized void append(File file, Recorder recorder) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            int next = 0;
+            int written = 0;
+            if (out.length() >= HEADER_SIZE && out.readInt() == MAGIC && out.readInt() == FORMAT_VERSION) {
+                next = out.readInt();
+                written = out.readInt();
+            } else {
+                out.setLength(0);
+            }
+
+            // One write per record rather than one per field
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            synchronized (recorder) {
+                buffer.putLong(recorder.mStartedAt);
+                buffer.putLong(recorder.mWallMicros);
+                buffer.putInt(recorder.mLocations);
+                buffer.putLong(recorder.mBytesReceived);
+                buffer.putLong(recorder.mAllocatedBytes);
+                buffer.putInt(recorder.mGcCount);
+                for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                    buffer.putInt(recorder.mCounts[stage]);
+                    buffer.putLong(recorder.mTotalMicros[stage]);
+                    buffer.putLong(recorder.mMaxMicros[stage]);
+                    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                        buffer.putInt(recorder.mBuckets[stage][bucket]);
+                    }
+                }
+            }
+            out.seek(HEADER_SIZE + (long) next * RECORD_SIZE);
+            out.write(buffer.array());
+
+            // The header goes last, so a record cut short is never pointed at
+            out.seek(0);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt((next + 1) % CAPACITY);
+            out.writeInt(Math.min(written + 1, CAPACITY));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the syncs in the file, newest first
+     */
+    public static List<Record> read(Context context) {
+        try {
+            return read(getFile(context));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading sync metrics", e);
+            return new ArrayList<Record>();
+        }
+    }
+
+    static synchronized List<Record> read(File file) throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        if (!file.exists()) {
+            return records;
+        }
+        ByteBuffer buffer;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            // Never more than CAPACITY records, so the whole file is read at once
+            byte[] bytes = new byte[(int) Math.min(in.length(), HEADER_SIZE + (long) CAPACITY * RECORD_SIZE)];
+            in.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes);
+        } finally {
+            in.close();
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return records;
+        }
+        int next = buffer.getInt();
+        int written = buffer.getInt();
+        for (int i = 1; i <= written; i++) {
+            int slot = (next - i + CAPACITY) % CAPACITY;
+            int position = HEADER_SIZE + slot * RECORD_SIZE;
+            if (position + RECORD_SIZE > buffer.limit()) {
+                break;
+            }
+            buffer.position(position);
+            Record record = new Record();
+            record.startedAt = buffer.getLong();
+            record.wallMicros = buffer.getLong();
+            record.locations = buffer.getInt();
+            record.bytesReceived = buffer.getLong();
+            record.allocatedBytes = buffer.getLong();
+            record.gcCount = buffer.getInt();
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                record.counts[stage] = buffer.getInt();
+                record.totalMicros[stage] = buffer.getLong();
+                record.maxMicros[stage] = buffer.getLong();
+                for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                    record.buckets[stage][bucket] = buffer.getInt();
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static long allocatedBytes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+            if (bytes != null) {
+                return Long.parseLong(bytes);
+            }
+        }
+        return -1;
+    }
+
+    private static int gcCount() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String count = Debug.getRuntimeStat("art.gc.gc-count");
+            if (count != null) {
+                return Integer.parseInt(count);
+            }
+        }
+        return -1;
+    }
+}
@@ -21,6 +21,8 @@ import android.net.Uri;
 import android.provider.BaseColumns;
 import android.text.format.Time;
 
+import java.util.TimeZone;
+
 /**
  * Defines table and column names for the weather database.
  */
@@ -43,6 +45,14 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_HISTORY = "history";
+    public static final String PATH_ROLLUP = "rollup";
+    public static final String PATH_SYNC_METRICS = "sync_metrics";
+
+    // ContentResolver.call method that moves the weather rows up to and including the date
+    // given as arg into the history tables, returning the count under EXTRA_ARCHIVED_COUNT.
+    public static final String METHOD_ARCHIVE_EXPIRED = "archive_expired";
+    public static final String EXTRA_ARCHIVED_COUNT = "archived_count";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
@@ -54,6 +64,23 @@ public class WeatherContract {
         return time.setJulianDay(julianDay);
     }
 
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    // The same normalization as above done with plain arithmetic, so it can run once per row of
+    // a bulk insert without allocating a Time each time.  Pass in the zone fetched once by the
+    // caller, TimeZone.getDefault() returns a copy.
+    public static long normalizeDate(long startDate, TimeZone timeZone) {
+        int offset = timeZone.getOffset(startDate);
+        long localTime = startDate + offset;
+        long localDay = localTime / DAY_IN_MILLIS;
+        if (localTime % DAY_IN_MILLIS < 0) {
+            localDay--;
+        }
+        long localMidnight = localDay * DAY_IN_MILLIS;
+        // The offset at midnight is not the one at startDate when DST changed in between
+        return localMidnight - timeZone.getOffset(localMidnight - offset);
+    }
+
     /* Inner class that defines the table contents of the location table */
     public static final class LocationEntry implements BaseColumns {
 
@@ -165,4 +192,135 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /*
+        Weather rows that have left the forecast.  They are kept in one table per month, named
+        TABLE_PREFIX + yyyyMM, with the columns of WeatherEntry; PARTITIONS_TABLE_NAME lists them
+        along with the range of dates each one covers.
+     */
+    public static final class HistoryEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_HISTORY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HISTORY;
+
+        public static final String TABLE_PREFIX = "weather_history_";
+
+        public static final String PARTITIONS_TABLE_NAME = "history_partition";
+        public static final String COLUMN_TABLE_NAME = "table_name";
+        // First and last date, inclusive, a partition can hold
+        public static final String COLUMN_START_DATE = "start_date";
+        public static final String COLUMN_END_DATE = "end_date";
+
+        // Query parameters bounding the dates returned, both inclusive
+        public static final String PARAM_START_DATE = "start";
+        public static final String PARAM_END_DATE = "end";
+
+        public static Uri buildHistoryLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static Uri buildHistoryLocationWithRange(String locationSetting, long startDate, long endDate) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendQueryParameter(PARAM_START_DATE, Long.toString(normalizeDate(startDate)))
+                    .appendQueryParameter(PARAM_END_DATE, Long.toString(normalizeDate(endDate)))
+                    .build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getStartDateFromUri(Uri uri) {
+            String dateString = uri.getQueryParameter(PARAM_START_DATE);
+            if (null != dateString && dateString.length() > 0)
+                return Long.parseLong(dateString);
+            else
+                return Long.MIN_VALUE;
+        }
+
+        public static long getEndDateFromUri(Uri uri) {
+            String dateString = uri.getQueryParameter(PARAM_END_DATE);
+            if (null != dateString && dateString.length() > 0)
+                return Long.parseLong(dateString);
+            else
+                return Long.MAX_VALUE;
+        }
+    }
+
+    /* Daily and weekly aggregates of the archived weather, kept up to date as rows are archived */
+    public static final class RollupEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_ROLLUP).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ROLLUP;
+
+        public static final String TABLE_NAME = "weather_rollup";
+
+        public static final String PERIOD_DAY = "day";
+        public static final String PERIOD_WEEK = "week";
+
+        public static final String COLUMN_LOC_KEY = "location_id";
+        // PERIOD_DAY or PERIOD_WEEK
+        public static final String COLUMN_PERIOD = "period";
+        // Normalized date of the first day of the period; weeks start on Monday
+        public static final String COLUMN_PERIOD_START = "period_start";
+        // Lowest min and highest max temperature of the period
+        public static final String COLUMN_MIN_TEMP = "min";
+        public static final String COLUMN_MAX_TEMP = "max";
+        // Mean of the daily (min + max) / 2 over the period
+        public static final String COLUMN_AVG_TEMP = "avg";
+        // Number of days the aggregates are over
+        public static final String COLUMN_DAY_COUNT = "day_count";
+
+        public static Uri buildRollupUri(String locationSetting, String period) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).appendPath(period).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static String getPeriodFromUri(Uri uri) {
+            return uri.getPathSegments().get(2);
+        }
+    }
+
+    /*
+        Debug view of the last syncs, as recorded by SyncMetrics.  Read only, and not backed by
+        the database: CONTENT_URI has one row per sync, newest first, and STAGES_URI one row per
+        stage with its latency histogram over those syncs.
+     */
+    public static final class SyncMetricsEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_METRICS).build();
+
+        public static final Uri STAGES_URI = CONTENT_URI.buildUpon().appendPath("stages").build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_METRICS;
+
+        // Columns of CONTENT_URI
+        // Wall clock time the sync started, in milliseconds
+        public static final String COLUMN_STARTED_AT = "started_at";
+        public static final String COLUMN_WALL_MICROS = "wall_micros";
+        public static final String COLUMN_LOCATIONS = "locations";
+        public static final String COLUMN_BYTES_RECEIVED = "bytes_received";
+        // Allocated by the whole process during the sync; -1 where the runtime cannot tell
+        public static final String COLUMN_ALLOCATED_BYTES = "allocated_bytes";
+        public static final String COLUMN_GC_COUNT = "gc_count";
+
+        // Columns of STAGES_URI
+        public static final String COLUMN_STAGE = "stage";
+        public static final String COLUMN_COUNT = "count";
+        public static final String COLUMN_TOTAL_MICROS = "total_micros";
+        public static final String COLUMN_MAX_MICROS = "max_micros";
+        // Followed by the bucket index; the upper bound of bucket i is 2^i ms, the last one has none
+        public static final String COLUMN_BUCKET_PREFIX = "bucket_";
+    }
 }
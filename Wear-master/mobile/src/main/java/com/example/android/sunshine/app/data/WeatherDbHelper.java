@@ -16,8 +16,15 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
@@ -26,14 +33,29 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  * Manages a local database for weather data.
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
+    private static final String LOG_TAG = WeatherDbHelper.class.getSimpleName();
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // Add a step to WeatherMigrations as well, so existing data survives the upgrade.
+    static final int DATABASE_VERSION = 4;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Serves the location + date lookups of WeatherProvider: every query of the weather table
+    // goes through location_id and a date bound, and the forecast list only needs the columns
+    // after those, so it is answered from the index alone (_id being the rowid).
+    static final String INDEX_WEATHER_LOCATION_DATE = "weather_location_date_idx";
+
+    private final Migration[] mMigrations;
+
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, WeatherMigrations.STEPS);
+    }
+
+    // For tests, which upgrade databases of their own with steps of their own
+    WeatherDbHelper(Context context, String name, Migration[] migrations) {
+        super(context, name, null, DATABASE_VERSION);
+        mMigrations = migrations;
     }
 
     @Override
@@ -81,18 +103,81 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        createWeatherIndexes(sqLiteDatabase);
+        WeatherHistory.createTables(sqLiteDatabase);
     }
 
+    static void createWeatherIndexes(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_LOCATION_DATE +
+                " ON " + WeatherEntry.TABLE_NAME + " (" +
+                WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherEntry.COLUMN_DATE + ", " +
+                WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                WeatherEntry.COLUMN_SHORT_DESC + ");");
+    }
+
+    /**
+     * Runs the migration steps from oldVersion up to newVersion in order, logging how long each
+     * one took.  SQLiteOpenHelper runs this in a transaction, so should a step fail, what it did
+     * is dropped along with everything else and the database is created from scratch: it is
+     * only a cache for online data after all.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        if (oldVersion < WeatherMigrations.OLDEST_MIGRATABLE_VERSION) {
+            Log.i(LOG_TAG, "No migration from version " + oldVersion + ", recreating the database");
+            recreate(sqLiteDatabase);
+            return;
+        }
+
+        long upgradeStart = SystemClock.elapsedRealtime();
+        int version = oldVersion;
+        try {
+            for (Migration migration : mMigrations) {
+                if (migration.toVersion <= oldVersion || migration.toVersion > newVersion) {
+                    continue;
+                }
+                if (migration.toVersion != version + 1) {
+                    throw new SQLException("No migration from version " + version + " to "
+                            + migration.toVersion);
+                }
+                long stepStart = SystemClock.elapsedRealtime();
+                migration.migrate(sqLiteDatabase);
+                version = migration.toVersion;
+                Log.i(LOG_TAG, "Migrated with " + migration + " in "
+                        + (SystemClock.elapsedRealtime() - stepStart) + " ms");
+            }
+            if (version != newVersion) {
+                throw new SQLException("No migration from version " + version + " to " + newVersion);
+            }
+        } catch (SQLException e) {
+            Log.e(LOG_TAG, "Migration from version " + version + " failed, recreating the database", e);
+            recreate(sqLiteDatabase);
+            return;
+        }
+        Log.i(LOG_TAG, "Upgraded from version " + oldVersion + " to " + newVersion + " in "
+                + (SystemClock.elapsedRealtime() - upgradeStart) + " ms");
+    }
+
+    /**
+     * Drops every table, whatever version it came from, and creates the current schema.
+     */
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
+        List<String> tables = new ArrayList<String>();
+        Cursor cursor = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type='table'"
+                + " AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (String table : tables) {
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + table);
+        }
         onCreate(sqLiteDatabase);
     }
 }
@@ -0,0 +1,349 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.app.data.WeatherContract.HistoryEntry;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.RollupEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The archive of weather rows whose day is over.
+ *
+ * Instead of being deleted, expired rows move out of the weather table into one table per
+ * month, so the weather table stays as small as the forecast and history queries only read the
+ * months they ask for.  Daily and weekly rollups are brought up to date in the same pass, for
+ * the charts that do not need every row.
+ *
+ * Every method expects to run inside a transaction of the caller.
+ */
+final class WeatherHistory {
+
+    // weather columns, in the order the partitions declare them
+    private static final String COLUMNS = WeatherEntry._ID + ", " +
+            WeatherEntry.COLUMN_LOC_KEY + ", " +
+            WeatherEntry.COLUMN_DATE + ", " +
+            WeatherEntry.COLUMN_SHORT_DESC + ", " +
+            WeatherEntry.COLUMN_WEATHER_ID + ", " +
+            WeatherEntry.COLUMN_MIN_TEMP + ", " +
+            WeatherEntry.COLUMN_MAX_TEMP + ", " +
+            WeatherEntry.COLUMN_HUMIDITY + ", " +
+            WeatherEntry.COLUMN_PRESSURE + ", " +
+            WeatherEntry.COLUMN_WIND_SPEED + ", " +
+            WeatherEntry.COLUMN_DEGREES;
+
+    //location_id = (SELECT _id FROM location WHERE location_setting = ?)
+    private static final String sLocationSettingSelection =
+            WeatherEntry.COLUMN_LOC_KEY + " = (SELECT " + LocationEntry._ID + " FROM " +
+                    LocationEntry.TABLE_NAME + " WHERE " +
+                    LocationEntry.COLUMN_LOCATION_SETTING + " = ?)";
+
+    //location_id = (...) AND date BETWEEN ? AND ?
+    private static final String sLocationSettingWithRangeSelection =
+            sLocationSettingSelection + " AND " + WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?";
+
+    //location_id = (...) AND period = ?
+    private static final String sRollupSelection =
+            sLocationSettingSelection + " AND " + RollupEntry.COLUMN_PERIOD + " = ?";
+
+    private WeatherHistory() {
+    }
+
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + HistoryEntry.PARTITIONS_TABLE_NAME + " (" +
+                HistoryEntry.COLUMN_TABLE_NAME + " TEXT PRIMARY KEY, " +
+                HistoryEntry.COLUMN_START_DATE + " INTEGER NOT NULL, " +
+                HistoryEntry.COLUMN_END_DATE + " INTEGER NOT NULL);");
+
+        db.execSQL("CREATE TABLE " + RollupEntry.TABLE_NAME + " (" +
+                RollupEntry._ID + " INTEGER PRIMARY KEY," +
+                RollupEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                RollupEntry.COLUMN_PERIOD + " TEXT NOT NULL, " +
+                RollupEntry.COLUMN_PERIOD_START + " INTEGER NOT NULL, " +
+                RollupEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                RollupEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                RollupEntry.COLUMN_AVG_TEMP + " REAL NOT NULL, " +
+                RollupEntry.COLUMN_DAY_COUNT + " INTEGER NOT NULL, " +
+                " FOREIGN KEY (" + RollupEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+                // Recomputing a period replaces its row
+                " UNIQUE (" + RollupEntry.COLUMN_LOC_KEY + ", " +
+                RollupEntry.COLUMN_PERIOD + ", " +
+                RollupEntry.COLUMN_PERIOD_START + ") ON CONFLICT REPLACE);");
+    }
+
+    /**
+     * Moves the weather rows up to and including the given normalized date into their monthly
+     * partitions, updates the rollups of the days and weeks they cover and deletes them from
+     * the weather table.
+     *
+     * @param archivedLocations receives the ids of the locations that had rows archived
+     * @return the number of rows archived
+     */
+    static int archive(SQLiteDatabase db, long cutoffDate, Set<Long> archivedLocations) {
+        String[] cutoffArgs = new String[]{Long.toString(cutoffDate)};
+
+        // Which locations, and which of their weeks, the expired rows touch
+        Set<String> weeks = new LinkedHashSet<String>();
+        long minDate = Long.MAX_VALUE;
+        long maxDate = Long.MIN_VALUE;
+        Calendar calendar = Calendar.getInstance();
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME,
+                new String[]{WeatherEntry.COLUMN_LOC_KEY, WeatherEntry.COLUMN_DATE},
+                WeatherEntry.COLUMN_DATE + " <= ?",
+                cutoffArgs,
+                null,
+                null,
+                null);
+        try {
+            if (cursor.getCount() == 0) {
+                return 0;
+            }
+            while (cursor.moveToNext()) {
+                long locationId = cursor.getLong(0);
+                long date = cursor.getLong(1);
+                archivedLocations.add(locationId);
+                weeks.add(locationId + ":" + getWeekStart(calendar, date));
+                minDate = Math.min(minDate, date);
+                maxDate = Math.max(maxDate, date);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Copy the rows month by month, creating the partitions they need
+        calendar.setTimeInMillis(minDate);
+        setToMonthStart(calendar);
+        while (calendar.getTimeInMillis() <= maxDate) {
+            String table = ensurePartition(db, calendar);
+            long monthStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.MONTH, 1);
+            db.execSQL("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS +
+                            " FROM " + WeatherEntry.TABLE_NAME + " WHERE " +
+                            WeatherEntry.COLUMN_DATE + " >= ? AND " +
+                            WeatherEntry.COLUMN_DATE + " < ? AND " +
+                            WeatherEntry.COLUMN_DATE + " <= ?",
+                    new Object[]{monthStart, calendar.getTimeInMillis(), cutoffDate});
+        }
+
+        // A day is archived once, so its rollup is the row itself
+        db.execSQL("INSERT INTO " + RollupEntry.TABLE_NAME + " (" +
+                        RollupEntry.COLUMN_LOC_KEY + ", " +
+                        RollupEntry.COLUMN_PERIOD + ", " +
+                        RollupEntry.COLUMN_PERIOD_START + ", " +
+                        RollupEntry.COLUMN_MIN_TEMP + ", " +
+                        RollupEntry.COLUMN_MAX_TEMP + ", " +
+                        RollupEntry.COLUMN_AVG_TEMP + ", " +
+                        RollupEntry.COLUMN_DAY_COUNT + ") SELECT " +
+                        WeatherEntry.COLUMN_LOC_KEY + ", '" + RollupEntry.PERIOD_DAY + "', " +
+                        WeatherEntry.COLUMN_DATE + ", " +
+                        WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                        WeatherEntry.COLUMN_MAX_TEMP + ", (" +
+                        WeatherEntry.COLUMN_MIN_TEMP + " + " + WeatherEntry.COLUMN_MAX_TEMP + ") / 2.0, 1" +
+                        " FROM " + WeatherEntry.TABLE_NAME + " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?",
+                new Object[]{cutoffDate});
+
+        // A week may have days archived by earlier syncs, so it is recomputed from its days,
+        // at most seven rollup rows each, rather than from the rows at hand
+        SQLiteStatement weekly = db.compileStatement("INSERT INTO " + RollupEntry.TABLE_NAME + " (" +
+                RollupEntry.COLUMN_LOC_KEY + ", " +
+                RollupEntry.COLUMN_PERIOD + ", " +
+                RollupEntry.COLUMN_PERIOD_START + ", " +
+                RollupEntry.COLUMN_MIN_TEMP + ", " +
+                RollupEntry.COLUMN_MAX_TEMP + ", " +
+                RollupEntry.COLUMN_AVG_TEMP + ", " +
+                RollupEntry.COLUMN_DAY_COUNT + ") SELECT ?, '" + RollupEntry.PERIOD_WEEK + "', ?, " +
+                "MIN(" + RollupEntry.COLUMN_MIN_TEMP + "), " +
+                "MAX(" + RollupEntry.COLUMN_MAX_TEMP + "), " +
+                "AVG(" + RollupEntry.COLUMN_AVG_TEMP + "), " +
+                "COUNT(*) FROM " + RollupEntry.TABLE_NAME + " WHERE " +
+                RollupEntry.COLUMN_LOC_KEY + " = ? AND " +
+                RollupEntry.COLUMN_PERIOD + " = '" + RollupEntry.PERIOD_DAY + "' AND " +
+                RollupEntry.COLUMN_PERIOD_START + " >= ? AND " +
+                RollupEntry.COLUMN_PERIOD_START + " < ?");
+        try {
+            for (String week : weeks) {
+                int separator = week.indexOf(':');
+                long locationId = Long.parseLong(week.substring(0, separator));
+                long weekStart = Long.parseLong(week.substring(separator + 1));
+                calendar.setTimeInMillis(weekStart);
+                calendar.add(Calendar.DAY_OF_MONTH, 7);
+                weekly.bindLong(1, locationId);
+                weekly.bindLong(2, weekStart);
+                weekly.bindLong(3, locationId);
+                weekly.bindLong(4, weekStart);
+                weekly.bindLong(5, calendar.getTimeInMillis());
+                weekly.executeInsert();
+            }
+        } finally {
+            weekly.close();
+        }
+
+        return db.delete(WeatherEntry.TABLE_NAME, WeatherEntry.COLUMN_DATE + " <= ?", cutoffArgs);
+    }
+
+    /**
+     * Reads the archived rows of a location between two normalized dates, inclusive, from the
+     * partitions that overlap them.
+     */
+    static Cursor queryHistory(SQLiteDatabase db, String locationSetting, long startDate, long endDate,
+                               String[] projection, String selection, String[] selectionArgs,
+                               String sortOrder) {
+        List<String> tables = new ArrayList<String>();
+        Cursor cursor = db.query(HistoryEntry.PARTITIONS_TABLE_NAME,
+                new String[]{HistoryEntry.COLUMN_TABLE_NAME},
+                HistoryEntry.COLUMN_START_DATE + " <= ? AND " + HistoryEntry.COLUMN_END_DATE + " >= ?",
+                new String[]{Long.toString(endDate), Long.toString(startDate)},
+                null,
+                null,
+                HistoryEntry.COLUMN_START_DATE);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (tables.isEmpty()) {
+            // Nothing archived for those dates: an empty cursor with the columns of a partition
+            return db.query(WeatherEntry.TABLE_NAME, projection, "0", null, null, null, null);
+        }
+
+        String[] rangeArgs = new String[]{locationSetting, Long.toString(startDate), Long.toString(endDate)};
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (projection == null) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < projection.length; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(projection[i]);
+            }
+        }
+        sql.append(" FROM (");
+        String[] args = new String[0];
+        for (int i = 0; i < tables.size(); i++) {
+            if (i > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT ").append(COLUMNS).append(" FROM ").append(tables.get(i))
+                    .append(" WHERE ").append(sLocationSettingWithRangeSelection);
+            args = DatabaseUtils.appendSelectionArgs(args, rangeArgs);
+        }
+        sql.append(')');
+        if (selection != null) {
+            sql.append(" WHERE ").append(selection);
+            args = DatabaseUtils.appendSelectionArgs(args, selectionArgs);
+        }
+        sql.append(" ORDER BY ").append(sortOrder != null ? sortOrder : WeatherEntry.COLUMN_DATE + " ASC");
+        return db.rawQuery(sql.toString(), args);
+    }
+
+    static Cursor queryRollups(SQLiteDatabase db, String locationSetting, String period,
+                               String[] projection, String selection, String[] selectionArgs,
+                               String sortOrder) {
+        return db.query(RollupEntry.TABLE_NAME,
+                projection,
+                DatabaseUtils.concatenateWhere(sRollupSelection, selection),
+                DatabaseUtils.appendSelectionArgs(new String[]{locationSetting, period}, selectionArgs),
+                null,
+                null,
+                sortOrder != null ? sortOrder : RollupEntry.COLUMN_PERIOD_START + " ASC");
+    }
+
+    /**
+     * Drops every partition and rollup.
+     *
+     * @return the number of archived rows that were deleted
+     */
+    static int clear(SQLiteDatabase db) {
+        List<String> tables = new ArrayList<String>();
+        Cursor cursor = db.query(HistoryEntry.PARTITIONS_TABLE_NAME,
+                new String[]{HistoryEntry.COLUMN_TABLE_NAME}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        int rowsDeleted = 0;
+        for (String table : tables) {
+            rowsDeleted += (int) DatabaseUtils.queryNumEntries(db, table);
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+        }
+        db.delete(HistoryEntry.PARTITIONS_TABLE_NAME, null, null);
+        db.delete(RollupEntry.TABLE_NAME, null, null);
+        return rowsDeleted;
+    }
+
+    /**
+     * Creates the partition for the month the calendar is set to, unless it exists already.
+     *
+     * @return the name of the partition
+     */
+    private static String ensurePartition(SQLiteDatabase db, Calendar monthStart) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMM", Locale.US);
+        format.setTimeZone(monthStart.getTimeZone());
+        String table = HistoryEntry.TABLE_PREFIX + format.format(monthStart.getTime());
+
+        if (DatabaseUtils.queryNumEntries(db, HistoryEntry.PARTITIONS_TABLE_NAME,
+                HistoryEntry.COLUMN_TABLE_NAME + " = ?", new String[]{table}) > 0) {
+            return table;
+        }
+
+        db.execSQL("CREATE TABLE " + table + " (" +
+                // _ID is carried over from the weather table
+                WeatherEntry._ID + " INTEGER PRIMARY KEY," +
+                WeatherEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL," +
+                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+                " FOREIGN KEY (" + WeatherEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+                // Location first, so the index behind it serves the location + range queries
+                " UNIQUE (" + WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);");
+
+        Calendar monthEnd = (Calendar) monthStart.clone();
+        monthEnd.set(Calendar.DAY_OF_MONTH, monthEnd.getActualMaximum(Calendar.DAY_OF_MONTH));
+        db.execSQL("INSERT INTO " + HistoryEntry.PARTITIONS_TABLE_NAME + " (" +
+                        HistoryEntry.COLUMN_TABLE_NAME + ", " +
+                        HistoryEntry.COLUMN_START_DATE + ", " +
+                        HistoryEntry.COLUMN_END_DATE + ") VALUES (?, ?, ?)",
+                new Object[]{table, monthStart.getTimeInMillis(), monthEnd.getTimeInMillis()});
+        return table;
+    }
+
+    private static void setToMonthStart(Calendar calendar) {
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+
+    /**
+     * @return the normalized date of the Monday starting the week of the given normalized date
+     */
+    static long getWeekStart(Calendar calendar, long date) {
+        calendar.setTimeInMillis(date);
+        int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+        calendar.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The ordered steps that bring an existing weather database up to the current schema.
+ *
+ * To change the schema, bump DATABASE_VERSION in {@link WeatherDbHelper}, make onCreate build
+ * the new schema and append a step here that turns the previous version into the new one.
+ */
+final class WeatherMigrations {
+
+    // Databases older than this predate the migrations and are recreated instead
+    static final int OLDEST_MIGRATABLE_VERSION = 2;
+
+    static final Migration[] STEPS = {
+            new AddWeatherLocationDateIndex(),
+            new AddHistoryTables(),
+    };
+
+    private WeatherMigrations() {
+    }
+
+    /**
+     * Version 3: covering index for the location + date lookups.
+     */
+    static class AddWeatherLocationDateIndex extends Migration {
+        AddWeatherLocationDateIndex() {
+            super(3);
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            WeatherDbHelper.createWeatherIndexes(db);
+        }
+    }
+
+    /**
+     * Version 4: partition registry and rollups of the weather history.  The partitions
+     * themselves are created as rows get archived.
+     */
+    static class AddHistoryTables extends Migration {
+        AddHistoryTables() {
+            super(4);
+        }
+
+        @Override
+        void migrate(SQLiteDatabase db) {
+            WeatherHistory.createTables(db);
+        }
+    }
+}
@@ -17,12 +17,27 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 
 public class WeatherProvider extends ContentProvider {
 
@@ -30,12 +45,22 @@ public class WeatherProvider extends ContentProvider {
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
 
+    // While applyBatch runs, change notifications are collected here and sent once it commits.
+    private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<Set<Uri>>();
+    // Rows changed by the weather insert of the applyBatch operation being applied, 0 or 1.
+    private final ThreadLocal<Integer> mBatchWeatherChanged = new ThreadLocal<Integer>();
+
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int HISTORY = 400;
+    static final int HISTORY_WITH_LOCATION = 401;
+    static final int ROLLUP_WITH_LOCATION_AND_PERIOD = 500;
+    static final int SYNC_METRICS = 600;
+    static final int SYNC_METRICS_STAGES = 601;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,18 +77,18 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
@@ -108,6 +133,63 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    private Cursor getSyncMetrics() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.SyncMetricsEntry._ID,
+                WeatherContract.SyncMetricsEntry.COLUMN_STARTED_AT,
+                WeatherContract.SyncMetricsEntry.COLUMN_WALL_MICROS,
+                WeatherContract.SyncMetricsEntry.COLUMN_LOCATIONS,
+                WeatherContract.SyncMetricsEntry.COLUMN_BYTES_RECEIVED,
+                WeatherContract.SyncMetricsEntry.COLUMN_ALLOCATED_BYTES,
+                WeatherContract.SyncMetricsEntry.COLUMN_GC_COUNT
+        });
+        List<SyncMetrics.Record> records = SyncMetrics.read(getContext());
+        for (int i = 0; i < records.size(); i++) {
+            SyncMetrics.Record record = records.get(i);
+            cursor.addRow(new Object[]{i, record.startedAt, record.wallMicros, record.locations,
+                    record.bytesReceived, record.allocatedBytes, record.gcCount});
+        }
+        return cursor;
+    }
+
+    private Cursor getSyncMetricsStages() {
+        String[] columns = new String[4 + SyncMetrics.BUCKET_COUNT];
+        columns[0] = WeatherContract.SyncMetricsEntry.COLUMN_STAGE;
+        columns[1] = WeatherContract.SyncMetricsEntry.COLUMN_COUNT;
+        columns[2] = WeatherContract.SyncMetricsEntry.COLUMN_TOTAL_MICROS;
+        columns[3] = WeatherContract.SyncMetricsEntry.COLUMN_MAX_MICROS;
+        for (int bucket = 0; bucket < SyncMetrics.BUCKET_COUNT; bucket++) {
+            columns[4 + bucket] = WeatherContract.SyncMetricsEntry.COLUMN_BUCKET_PREFIX + bucket;
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, SyncMetrics.STAGE_COUNT);
+
+        List<SyncMetrics.Record> records = SyncMetrics.read(getContext());
+        for (int stage = 0; stage < SyncMetrics.STAGE_COUNT; stage++) {
+            Object[] row = new Object[columns.length];
+            int count = 0;
+            long totalMicros = 0;
+            long maxMicros = 0;
+            long[] buckets = new long[SyncMetrics.BUCKET_COUNT];
+            for (SyncMetrics.Record record : records) {
+                count += record.counts[stage];
+                totalMicros += record.totalMicros[stage];
+                maxMicros = Math.max(maxMicros, record.maxMicros[stage]);
+                for (int bucket = 0; bucket < SyncMetrics.BUCKET_COUNT; bucket++) {
+                    buckets[bucket] += record.buckets[stage][bucket];
+                }
+            }
+            row[0] = SyncMetrics.STAGE_NAMES[stage];
+            row[1] = count;
+            row[2] = totalMicros;
+            row[3] = maxMicros;
+            for (int bucket = 0; bucket < SyncMetrics.BUCKET_COUNT; bucket++) {
+                row[4 + bucket] = buckets[bucket];
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -130,6 +212,13 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+
+        matcher.addURI(authority, WeatherContract.PATH_HISTORY, HISTORY);
+        matcher.addURI(authority, WeatherContract.PATH_HISTORY + "/*", HISTORY_WITH_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_ROLLUP + "/*/*", ROLLUP_WITH_LOCATION_AND_PERIOD);
+
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_METRICS, SYNC_METRICS);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_METRICS + "/stages", SYNC_METRICS_STAGES);
         return matcher;
     }
 
@@ -164,6 +253,14 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case HISTORY:
+            case HISTORY_WITH_LOCATION:
+                return WeatherContract.HistoryEntry.CONTENT_TYPE;
+            case ROLLUP_WITH_LOCATION_AND_PERIOD:
+                return WeatherContract.RollupEntry.CONTENT_TYPE;
+            case SYNC_METRICS:
+            case SYNC_METRICS_STAGES:
+                return WeatherContract.SyncMetricsEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -213,6 +310,41 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "history/*"
+            case HISTORY_WITH_LOCATION: {
+                retCursor = WeatherHistory.queryHistory(mOpenHelper.getReadableDatabase(),
+                        WeatherContract.HistoryEntry.getLocationSettingFromUri(uri),
+                        WeatherContract.HistoryEntry.getStartDateFromUri(uri),
+                        WeatherContract.HistoryEntry.getEndDateFromUri(uri),
+                        projection,
+                        selection,
+                        selectionArgs,
+                        sortOrder
+                );
+                break;
+            }
+            // "rollup/*/*"
+            case ROLLUP_WITH_LOCATION_AND_PERIOD: {
+                retCursor = WeatherHistory.queryRollups(mOpenHelper.getReadableDatabase(),
+                        WeatherContract.RollupEntry.getLocationSettingFromUri(uri),
+                        WeatherContract.RollupEntry.getPeriodFromUri(uri),
+                        projection,
+                        selection,
+                        selectionArgs,
+                        sortOrder
+                );
+                break;
+            }
+            // "sync_metrics"
+            case SYNC_METRICS: {
+                retCursor = getSyncMetrics();
+                break;
+            }
+            // "sync_metrics/stages"
+            case SYNC_METRICS_STAGES: {
+                retCursor = getSyncMetricsStages();
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -233,12 +365,31 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                Long locationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                if (locationId == null) {
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                }
+                int changed;
+                db.beginTransaction();
+                try {
+                    changed = upsertLocationWeather(db, null, locationId, Collections.singletonList(values));
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                long _id = findWeatherId(db, values);
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
+                if (changed > 0) {
+                    notifyWeatherChanged(db, Collections.singleton(locationId));
+                    refreshSnapshot();
+                }
+                if (mPendingNotifications.get() != null) {
+                    mBatchWeatherChanged.set(changed);
+                }
+                return returnUri;
             }
             case LOCATION: {
                 long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
@@ -251,7 +402,7 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return returnUri;
     }
 
@@ -271,21 +422,43 @@ public class WeatherProvider extends ContentProvider {
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case HISTORY:
+                // The archive can only be cleared as a whole
+                db.beginTransaction();
+                try {
+                    rowsDeleted = WeatherHistory.clear(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                notifyChange(WeatherContract.RollupEntry.CONTENT_URI);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
+            if (match != HISTORY) {
+                refreshSnapshot();
+            }
         }
         return rowsDeleted;
     }
 
     private void normalizeDate(ContentValues values) {
+        normalizeDate(values, TimeZone.getDefault());
+    }
+
+    private void normalizeDate(ContentValues values, TimeZone timeZone) {
         // normalize the date value
-        if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
-            long dateValue = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
-            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(dateValue));
+        Object dateValue = values.get(WeatherContract.WeatherEntry.COLUMN_DATE);
+        if (dateValue instanceof Number) {
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    WeatherContract.normalizeDate(((Number) dateValue).longValue(), timeZone));
+        } else if (dateValue != null) {
+            long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(date, timeZone));
         }
     }
 
@@ -310,38 +483,326 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
+            refreshSnapshot();
         }
         return rowsUpdated;
     }
 
+    /**
+     * Stores weather rows, writing only those that differ from what is already stored for their
+     * location and date.  Existing rows are updated in place so they keep their _ID, and only
+     * the locations whose rows changed are notified.
+     *
+     * @return the number of rows that were inserted or updated
+     */
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                // Group the rows by location, so each location's stored rows are read once
+                Map<Long, List<ContentValues>> byLocation = new LinkedHashMap<Long, List<ContentValues>>();
+                TimeZone timeZone = TimeZone.getDefault();
+                for (ContentValues value : values) {
+                    normalizeDate(value, timeZone);
+                    Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                    List<ContentValues> rows = byLocation.get(locationId);
+                    if (rows == null) {
+                        rows = new ArrayList<ContentValues>();
+                        byLocation.put(locationId, rows);
+                    }
+                    rows.add(value);
+                }
+
+                Set<Long> changedLocations = new LinkedHashSet<Long>();
+                // One compiled INSERT and UPDATE serve every row of the transaction
+                WeatherRowWriter writer = new WeatherRowWriter(db);
                 db.beginTransaction();
                 int returnCount = 0;
                 try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
+                    for (Map.Entry<Long, List<ContentValues>> entry : byLocation.entrySet()) {
+                        Long locationId = entry.getKey();
+                        if (locationId == null) {
+                            // Without a location these can only fail, as they always have
+                            for (ContentValues value : entry.getValue()) {
+                                if (db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value) != -1) {
+                                    returnCount++;
+                                }
+                            }
+                            continue;
+                        }
+                        int changed = upsertLocationWeather(db, writer, locationId, entry.getValue());
+                        if (changed > 0) {
+                            returnCount += changed;
+                            changedLocations.add(locationId);
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
+                    writer.close();
+                }
+                notifyWeatherChanged(db, changedLocations);
+                if (returnCount > 0) {
+                    refreshSnapshot();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Diffs the given rows of a single location against the stored ones: new dates are
+     * inserted, differing rows are updated by _ID and identical rows are left alone.
+     *
+     * @param writer the statements to write with, or null to use plain inserts and updates
+     * @return the number of rows that were inserted or updated
+     */
+    private int upsertLocationWeather(SQLiteDatabase db, WeatherRowWriter writer, long locationId,
+                                      List<ContentValues> rows) {
+        // Only the stored days the incoming rows span can match one of them
+        long minDate = Long.MAX_VALUE;
+        long maxDate = Long.MIN_VALUE;
+        for (ContentValues row : rows) {
+            Object date = row.get(WeatherContract.WeatherEntry.COLUMN_DATE);
+            if (date instanceof Number) {
+                minDate = Math.min(minDate, ((Number) date).longValue());
+                maxDate = Math.max(maxDate, ((Number) date).longValue());
+            }
+        }
+
+        Cursor existing = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[]{Long.toString(locationId), Long.toString(minDate), Long.toString(maxDate)},
+                null,
+                null,
+                null);
+        try {
+            int idIndex = existing.getColumnIndex(WeatherContract.WeatherEntry._ID);
+            int dateIndex = existing.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+            Map<Long, Integer> positionByDate = new HashMap<Long, Integer>(existing.getCount() * 2);
+            while (existing.moveToNext()) {
+                positionByDate.put(existing.getLong(dateIndex), existing.getPosition());
+            }
+
+            int changed = 0;
+            for (ContentValues row : rows) {
+                Integer position = positionByDate.isEmpty() ? null
+                        : positionByDate.get(row.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+                if (position == null) {
+                    long _id = writer != null ? writer.insert(row)
+                            : db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, row);
+                    if (_id != -1) {
+                        changed++;
+                    }
+                    continue;
+                }
+                existing.moveToPosition(position);
+                if (matchesStoredRow(existing, row)) {
+                    continue;
+                }
+                long _id = existing.getLong(idIndex);
+                changed += writer != null ? writer.update(_id, row)
+                        : db.update(WeatherContract.WeatherEntry.TABLE_NAME, row,
+                                WeatherContract.WeatherEntry._ID + " = ?", new String[]{Long.toString(_id)});
+            }
+            return changed;
+        } finally {
+            existing.close();
+        }
+    }
+
+    /**
+     * @return true if every value in the given row equals the one stored at the cursor position
+     */
+    private static boolean matchesStoredRow(Cursor stored, ContentValues row) {
+        for (Map.Entry<String, Object> entry : row.valueSet()) {
+            if (WeatherContract.WeatherEntry._ID.equals(entry.getKey())) {
+                continue;
+            }
+            int index = stored.getColumnIndex(entry.getKey());
+            if (index == -1) {
+                return false;
+            }
+            Object value = entry.getValue();
+            if (value == null) {
+                if (!stored.isNull(index)) return false;
+            } else if (value instanceof Number) {
+                Number number = (Number) value;
+                switch (stored.getType(index)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        if (stored.getLong(index) != number.longValue()
+                                || (double) stored.getLong(index) != number.doubleValue()) return false;
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        if (stored.getDouble(index) != number.doubleValue()) return false;
+                        break;
+                    default:
+                        return false;
+                }
+            } else if (!value.toString().equals(stored.getString(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long findWeatherId(SQLiteDatabase db, ContentValues row) {
+        Long date = row.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        if (date == null) {
+            return -1;
+        }
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[]{WeatherContract.WeatherEntry._ID},
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                new String[]{row.getAsString(WeatherContract.WeatherEntry.COLUMN_LOC_KEY), Long.toString(date)},
+                null,
+                null,
+                null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Notifies the weather/[location setting] URI of each given location, which reaches the
+     * loaders of that location without waking up those of every other one.
+     */
+    private void notifyWeatherChanged(SQLiteDatabase db, Set<Long> locationIds) {
+        if (locationIds.isEmpty()) {
+            return;
+        }
+        StringBuilder selection = new StringBuilder(WeatherContract.LocationEntry._ID).append(" IN (");
+        String[] selectionArgs = new String[locationIds.size()];
+        int i = 0;
+        for (Long locationId : locationIds) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i++] = Long.toString(locationId);
+        }
+        selection.append(')');
+
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                selection.toString(),
+                selectionArgs,
+                null,
+                null,
+                null);
+        int notified = 0;
+        try {
+            while (cursor.moveToNext()) {
+                notifyChange(WeatherContract.WeatherEntry.buildWeatherLocation(cursor.getString(0)));
+                notified++;
+            }
+        } finally {
+            cursor.close();
+        }
+        if (notified < locationIds.size()) {
+            // Rows of a location we cannot name; fall back to telling everybody
+            notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+        }
+    }
+
+    /**
+     * Applies all of the operations in a single transaction, so a sync covering several
+     * locations either lands completely or not at all.  Observers are told about each changed
+     * URI once, after the transaction has committed.
+     *
+     * A weather insert leaves a stored row that is already the same alone, like
+     * {@link #bulkInsert}, so its result carries the number of rows it changed, 0 or 1, as its
+     * count rather than a uri.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final Set<Uri> pending = new LinkedHashSet<Uri>();
+        mPendingNotifications.set(pending);
+        ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                results[i] = operations.get(i).apply(this, results, i);
+                Integer changed = mBatchWeatherChanged.get();
+                if (changed != null) {
+                    results[i] = new ContentProviderResult(changed);
+                    mBatchWeatherChanged.remove();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mPendingNotifications.remove();
+            mBatchWeatherChanged.remove();
+        }
+        if (!pending.isEmpty()) {
+            refreshSnapshot();
+        }
+        for (Uri uri : pending) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
+    /**
+     * Handles {@link WeatherContract#METHOD_ARCHIVE_EXPIRED}, archiving the weather rows up to
+     * and including the normalized date passed as arg in one transaction.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!WeatherContract.METHOD_ARCHIVE_EXPIRED.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Long> archivedLocations = new LinkedHashSet<Long>();
+        int archived;
+        db.beginTransaction();
+        try {
+            archived = WeatherHistory.archive(db, Long.parseLong(arg), archivedLocations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // The snapshot starts at today and only days before it are archived, so it stays as the
+        // sync's write left it
+        if (archived > 0) {
+            notifyWeatherChanged(db, archivedLocations);
+            notifyChange(WeatherContract.HistoryEntry.CONTENT_URI);
+            notifyChange(WeatherContract.RollupEntry.CONTENT_URI);
+        }
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ARCHIVED_COUNT, archived);
+        return result;
+    }
+
+    /**
+     * Swaps in a new {@link ForecastSnapshot} once a change to the weather or the locations has
+     * committed.  The operations of applyBatch leave it to the end of the batch.
+     */
+    private void refreshSnapshot() {
+        if (mPendingNotifications.get() != null) {
+            return;
+        }
+        ForecastSnapshot.rebuild(mOpenHelper.getReadableDatabase());
+    }
+
+    private void notifyChange(Uri uri) {
+        Set<Uri> pending = mPendingNotifications.get();
+        if (pending != null) {
+            pending.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
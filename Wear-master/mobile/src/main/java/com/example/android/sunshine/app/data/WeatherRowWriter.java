@@ -0,0 +1,135 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Writes weather rows through an INSERT and an UPDATE statement compiled once and reused for
+ * every row of a transaction.
+ *
+ * SQLiteDatabase.insert and update build a new SQL string from the key set of every
+ * ContentValues and compile it again; here the values are bound straight from the boxed
+ * numbers the ContentValues already hold.  Rows that do not carry exactly the full set of
+ * weather columns go through the regular calls instead.
+ */
+class WeatherRowWriter {
+
+    // The order in which columns are bound; see bindRow
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    // Columns before this one are INTEGER, the short description is TEXT, the rest REAL
+    private static final int INDEX_SHORT_DESC = 3;
+
+    private final SQLiteDatabase mDb;
+    private SQLiteStatement mInsert;
+    private SQLiteStatement mUpdate;
+
+    WeatherRowWriter(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * @return the row ID of the new row, or -1 if it could not be inserted
+     */
+    long insert(ContentValues values) {
+        if (!canBind(values)) {
+            return mDb.insert(WeatherEntry.TABLE_NAME, null, values);
+        }
+        if (mInsert == null) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(WeatherEntry.TABLE_NAME).append(" (");
+            for (int i = 0; i < COLUMNS.length; i++) {
+                sql.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+            }
+            sql.append(") VALUES (");
+            for (int i = 0; i < COLUMNS.length; i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+            mInsert = mDb.compileStatement(sql.append(')').toString());
+        }
+        bindRow(mInsert, values);
+        return mInsert.executeInsert();
+    }
+
+    /**
+     * @return the number of rows updated, 0 or 1
+     */
+    int update(long id, ContentValues values) {
+        if (!canBind(values)) {
+            return mDb.update(WeatherEntry.TABLE_NAME, values, WeatherEntry._ID + " = ?",
+                    new String[]{Long.toString(id)});
+        }
+        if (mUpdate == null) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(WeatherEntry.TABLE_NAME).append(" SET ");
+            for (int i = 0; i < COLUMNS.length; i++) {
+                sql.append(i == 0 ? "" : ",").append(COLUMNS[i]).append("=?");
+            }
+            sql.append(" WHERE ").append(WeatherEntry._ID).append("=?");
+            mUpdate = mDb.compileStatement(sql.toString());
+        }
+        bindRow(mUpdate, values);
+        mUpdate.bindLong(COLUMNS.length + 1, id);
+        return mUpdate.executeUpdateDelete();
+    }
+
+    void close() {
+        if (mInsert != null) {
+            mInsert.close();
+            mInsert = null;
+        }
+        if (mUpdate != null) {
+            mUpdate.close();
+            mUpdate = null;
+        }
+    }
+
+    private static boolean canBind(ContentValues values) {
+        if (values.size() != COLUMNS.length) {
+            return false;
+        }
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Object value = values.get(COLUMNS[i]);
+            if (i < INDEX_SHORT_DESC) {
+                // A fractional value in an INTEGER column is kept as REAL by SQLite, so let
+                // the regular path deal with it
+                if (!(value instanceof Integer || value instanceof Long
+                        || value instanceof Short || value instanceof Byte)) {
+                    return false;
+                }
+            } else if (i == INDEX_SHORT_DESC) {
+                if (!(value instanceof String)) {
+                    return false;
+                }
+            } else if (!(value instanceof Number)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void bindRow(SQLiteStatement statement, ContentValues values) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Object value = values.get(COLUMNS[i]);
+            if (i < INDEX_SHORT_DESC) {
+                statement.bindLong(i + 1, ((Number) value).longValue());
+            } else if (i == INDEX_SHORT_DESC) {
+                statement.bindString(i + 1, (String) value);
+            } else {
+                statement.bindDouble(i + 1, ((Number) value).doubleValue());
+            }
+        }
+    }
+}
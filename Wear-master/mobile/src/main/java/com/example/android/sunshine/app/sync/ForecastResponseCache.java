@@ -0,0 +1,322 @@
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.SyncMetrics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk cache for forecast responses, keyed by the request URL.
+ *
+ * For every URL we keep the ETag and Last-Modified validators the server sent along with a gzip
+ * compressed copy of the body.  Subsequent requests for the same URL are made conditional, so
+ * when the forecast has not changed the server answers 304 and the sync can stop right there.
+ * The stored body lets us rebuild the local rows after a 304 if they have been wiped meanwhile.
+ */
+public class ForecastResponseCache {
+    private static final String LOG_TAG = ForecastResponseCache.class.getSimpleName();
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final File mDirectory;
+
+    public ForecastResponseCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Issues a GET for the given URL, conditional on any validators we hold for it.
+     * The caller must {@link Response#close()} the response.
+     */
+    public Response open(URL url) throws IOException {
+        return open(url, null);
+    }
+
+    /**
+     * Same as {@link #open(URL)}, recording how long connecting and waiting for the status line
+     * took when metrics is not null.
+     */
+    public Response open(URL url, SyncMetrics.Recorder metrics) throws IOException {
+        String key = keyFor(url.toString());
+        Validators validators = readValidators(key);
+
+        // Create the request to OpenWeatherMap, and open the connection
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (validators != null) {
+            if (validators.etag != null) {
+                connection.setRequestProperty(HEADER_IF_NONE_MATCH, validators.etag);
+            }
+            if (validators.lastModified != null) {
+                connection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, validators.lastModified);
+            }
+        }
+        long connectStart = System.nanoTime();
+        connection.connect();
+        long connected = System.nanoTime();
+        // Sends the request and reads the status line
+        Response response = new Response(key, connection);
+        if (metrics != null) {
+            metrics.record(SyncMetrics.STAGE_CONNECT, connected - connectStart);
+            metrics.record(SyncMetrics.STAGE_FIRST_BYTE, System.nanoTime() - connected);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the decompressed body stored for the given URL, or null if there is none.
+     */
+    public InputStream openCachedBody(URL url) throws IOException {
+        File body = new File(mDirectory, keyFor(url.toString()) + BODY_SUFFIX);
+        if (!body.exists()) {
+            return null;
+        }
+        return new GZIPInputStream(new FileInputStream(body));
+    }
+
+    /**
+     * Drops the validators and body for the given URL, so that the next request is unconditional.
+     */
+    public void invalidate(URL url) {
+        invalidate(keyFor(url.toString()));
+    }
+
+    /**
+     * A response being read.  When the body turns out to be usable call {@link #commit()} so its
+     * validators and body are stored; otherwise closing the response discards them.
+     */
+    public class Response {
+        private final String mKey;
+        private final HttpURLConnection mConnection;
+        private final int mResponseCode;
+        private File mTempBody;
+        private OutputStream mBodyCopy;
+        private boolean mCommitted;
+
+        Response(String key, HttpURLConnection connection) throws IOException {
+            mKey = key;
+            mConnection = connection;
+            mResponseCode = connection.getResponseCode();
+        }
+
+        public boolean isNotModified() {
+            return mResponseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+
+        /**
+         * Returns the body.  For a 200 every byte read is also written to the cache; for a 304
+         * this is the body stored from the last 200, or null if it is gone.
+         */
+        public InputStream getBody() throws IOException {
+            if (isNotModified()) {
+                File body = new File(mDirectory, mKey + BODY_SUFFIX);
+                return body.exists() ? new GZIPInputStream(new FileInputStream(body)) : null;
+            }
+            InputStream in = mConnection.getInputStream();
+            if (in == null || mResponseCode != HttpURLConnection.HTTP_OK) {
+                return in;
+            }
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                return in;
+            }
+            mTempBody = new File(mDirectory, mKey + BODY_SUFFIX + TEMP_SUFFIX);
+            mBodyCopy = new GZIPOutputStream(new FileOutputStream(mTempBody));
+            return new CopyingInputStream(in);
+        }
+
+        /**
+         * Stores the validators and the body read so far.  Only the response to a request that
+         * carried an ETag or Last-Modified header is worth keeping.
+         */
+        public void commit() {
+            if (mBodyCopy == null || mCommitted) {
+                return;
+            }
+            String etag = mConnection.getHeaderField(HEADER_ETAG);
+            String lastModified = mConnection.getHeaderField(HEADER_LAST_MODIFIED);
+            try {
+                mBodyCopy.close();
+                mBodyCopy = null;
+                if (etag == null && lastModified == null) {
+                    // Whatever we held for this URL is out of date now
+                    invalidate(mKey);
+                    return;
+                }
+                File body = new File(mDirectory, mKey + BODY_SUFFIX);
+                if (!mTempBody.renameTo(body)) {
+                    throw new IOException("Unable to rename " + mTempBody);
+                }
+                writeValidators(mKey, new Validators(etag, lastModified));
+                mCommitted = true;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error caching forecast response", e);
+                invalidate(mKey);
+            }
+        }
+
+        public void close() {
+            if (mBodyCopy != null) {
+                try {
+                    mBodyCopy.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing cached body", e);
+                }
+                mBodyCopy = null;
+            }
+            if (mTempBody != null) {
+                mTempBody.delete();
+            }
+            // Closing the body rather than disconnecting hands a fully read socket back to the
+            // keep-alive pool, so the next request to the same host skips the handshake.
+            try {
+                InputStream in = mResponseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {
+                mConnection.disconnect();
+            }
+        }
+
+        private class CopyingInputStream extends FilterInputStream {
+            CopyingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1 && mBodyCopy != null) {
+                    mBodyCopy.write(b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if (read > 0 && mBodyCopy != null) {
+                    mBodyCopy.write(buffer, offset, read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long byteCount) throws IOException {
+                // Read through so the stored copy stays complete
+                byte[] scratch = new byte[(int) Math.min(byteCount, 4096)];
+                long skipped = 0;
+                while (skipped < byteCount) {
+                    int read = read(scratch, 0, (int) Math.min(scratch.length, byteCount - skipped));
+                    if (read == -1) break;
+                    skipped += read;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        }
+    }
+
+    private static class Validators {
+        final String etag;
+        final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private Validators readValidators(String key) {
+        File meta = new File(mDirectory, key + META_SUFFIX);
+        if (!meta.exists() || !new File(mDirectory, key + BODY_SUFFIX).exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(meta));
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            return new Validators(etag, lastModified);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading cached validators", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+        }
+    }
+
+    private void writeValidators(String key, Validators validators) throws IOException {
+        File temp = new File(mDirectory, key + META_SUFFIX + TEMP_SUFFIX);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            out.writeBoolean(validators.etag != null);
+            if (validators.etag != null) out.writeUTF(validators.etag);
+            out.writeBoolean(validators.lastModified != null);
+            if (validators.lastModified != null) out.writeUTF(validators.lastModified);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(new File(mDirectory, key + META_SUFFIX))) {
+            throw new IOException("Unable to rename " + temp);
+        }
+    }
+
+    private void invalidate(String key) {
+        new File(mDirectory, key + META_SUFFIX).delete();
+        new File(mDirectory, key + BODY_SUFFIX).delete();
+    }
+
+    private static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.SyncMetrics;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Refreshes the forecast of every row in the location table in one sync pass.
+ *
+ * The forecasts are fetched and parsed on a small bounded pool.  HttpURLConnection keeps idle
+ * connections to a host alive, so the workers share a handful of sockets to the server instead
+ * of opening one per city.  Once every fetch is done, the rows of all cities are written through
+ * a single {@link ContentProviderClient#applyBatch}, which the provider runs in one transaction
+ * and which reports how many of the weather rows actually changed.
+ */
+class LocationBatchSync {
+    private static final String LOG_TAG = LocationBatchSync.class.getSimpleName();
+
+    // HttpURLConnection keeps up to five idle connections per host (http.maxConnections), so
+    // with four workers every request can go out on a warm socket.
+    static final int MAX_PARALLEL_FETCHES = 4;
+    private static final long FETCH_TIMEOUT_SECONDS = 60;
+
+    private static final String[] LOCATION_COLUMNS = {
+            WeatherContract.LocationEntry._ID,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.LocationEntry.COLUMN_CITY_NAME,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+
+    // these indices must match the projection
+    private static final int COL_LOCATION_ID = 0;
+    private static final int COL_LOCATION_SETTING = 1;
+    private static final int COL_CITY_NAME = 2;
+    private static final int COL_COORD_LAT = 3;
+    private static final int COL_COORD_LONG = 4;
+
+    /**
+     * The outcome of fetching a single city, only ever written on the sync thread.
+     */
+    static class CityResult {
+        final String locationSetting;
+        // -1 for a location that is not in the database yet
+        final long locationId;
+        final String cityName;
+        final double latitude;
+        final double longitude;
+
+        URL url;
+        ForecastJsonParser.Forecast forecast;
+        boolean notModified;
+        @SunshineSyncAdapter.LocationStatus int status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+        long latencyMillis;
+
+        CityResult(String locationSetting, long locationId, String cityName, double latitude,
+                   double longitude) {
+            this.locationSetting = locationSetting;
+            this.locationId = locationId;
+            this.cityName = cityName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * What a worker found for one city.  It is handed back through the worker's Future, so a
+     * worker that outlives its timeout has nothing shared left to write to.
+     */
+    private static class Fetch {
+        URL url;
+        ForecastJsonParser.Forecast forecast;
+        boolean notModified;
+        @SunshineSyncAdapter.LocationStatus int status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+        long latencyMillis;
+    }
+
+    /**
+     * What a batch sync did, and how long it took.
+     */
+    static class Report {
+        final List<CityResult> cities = new ArrayList<CityResult>();
+        // weather rows the provider inserted or updated, leaving out the ones that did not change
+        int rowsChanged;
+        // rows moved out of the weather table into the history
+        int rowsArchived;
+        long fetchMillis;
+        long commitMillis;
+        long wallMillis;
+        @SunshineSyncAdapter.LocationStatus int preferredLocationStatus = SunshineSyncAdapter.LOCATION_STATUS_OK;
+    }
+
+    private final Context mContext;
+    private final ForecastResponseCache mResponseCache;
+
+    LocationBatchSync(Context context, ForecastResponseCache responseCache) {
+        mContext = context;
+        mResponseCache = responseCache;
+    }
+
+    /**
+     * Fetches, parses and stores the forecast of every known location plus the preferred one,
+     * and adds the counts to the sync stats.
+     */
+    Report run(ContentProviderClient provider, String preferredLocation, SyncResult syncResult,
+               SyncMetrics.Recorder metrics) {
+        Report report = new Report();
+        long start = SystemClock.elapsedRealtime();
+
+        List<CityResult> cities;
+        try {
+            cities = queryLocations(provider, preferredLocation);
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, "Error reading locations", e);
+            syncResult.databaseError = true;
+            return report;
+        }
+        report.cities.addAll(cities);
+        metrics.addLocations(cities.size());
+
+        fetchAll(cities, metrics);
+        report.fetchMillis = SystemClock.elapsedRealtime() - start;
+
+        long commitStart = SystemClock.elapsedRealtime();
+        commit(provider, cities, report, syncResult, metrics);
+        report.commitMillis = SystemClock.elapsedRealtime() - commitStart;
+        report.wallMillis = SystemClock.elapsedRealtime() - start;
+
+        for (CityResult city : cities) {
+            syncResult.stats.numEntries++;
+            if (city.notModified) {
+                syncResult.stats.numSkippedEntries++;
+            }
+            if (city.status == SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN) {
+                syncResult.stats.numIoExceptions++;
+            } else if (city.status == SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID) {
+                syncResult.stats.numParseExceptions++;
+            }
+            if (city.locationSetting.equals(preferredLocation)) {
+                report.preferredLocationStatus = city.status;
+            }
+        }
+        syncResult.stats.numInserts += report.rowsChanged;
+        syncResult.stats.numDeletes += report.rowsArchived;
+
+        logReport(report, syncResult);
+        return report;
+    }
+
+    private List<CityResult> queryLocations(ContentProviderClient provider, String preferredLocation)
+            throws RemoteException {
+        List<CityResult> cities = new ArrayList<CityResult>();
+        boolean hasPreferred = false;
+        Cursor cursor = provider.query(WeatherContract.LocationEntry.CONTENT_URI, LOCATION_COLUMNS,
+                null, null, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    String locationSetting = cursor.getString(COL_LOCATION_SETTING);
+                    hasPreferred |= locationSetting.equals(preferredLocation);
+                    cities.add(new CityResult(locationSetting, cursor.getLong(COL_LOCATION_ID),
+                            cursor.getString(COL_CITY_NAME), cursor.getDouble(COL_COORD_LAT),
+                            cursor.getDouble(COL_COORD_LONG)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        // The preferred location is added to the table along with its first forecast
+        if (!hasPreferred && preferredLocation != null) {
+            cities.add(new CityResult(preferredLocation, -1, null, 0, 0));
+        }
+        return cities;
+    }
+
+    private void fetchAll(List<CityResult> cities, SyncMetrics.Recorder metrics) {
+        if (cities.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_PARALLEL_FETCHES, cities.size()));
+        try {
+            List<Future<Fetch>> futures = new ArrayList<Future<Fetch>>(cities.size());
+            for (CityResult city : cities) {
+                futures.add(executor.submit(new FetchTask(city.locationSetting, metrics)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                CityResult city = cities.get(i);
+                try {
+                    Fetch fetch = futures.get(i).get(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    city.url = fetch.url;
+                    city.forecast = fetch.forecast;
+                    city.notModified = fetch.notModified;
+                    city.status = fetch.status;
+                    city.latencyMillis = fetch.latencyMillis;
+                } catch (ExecutionException | TimeoutException e) {
+                    Log.e(LOG_TAG, "Error fetching " + city.locationSetting, e);
+                    futures.get(i).cancel(true);
+                    city.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetches and parses the forecast of one city, on a worker thread.
+     */
+    private class FetchTask implements Callable<Fetch> {
+        private final String mLocationSetting;
+        private final SyncMetrics.Recorder mMetrics;
+
+        FetchTask(String locationSetting, SyncMetrics.Recorder metrics) {
+            mLocationSetting = locationSetting;
+            mMetrics = metrics;
+        }
+
+        @Override
+        public Fetch call() {
+            long start = SystemClock.elapsedRealtime();
+            Fetch fetch = new Fetch();
+            ForecastResponseCache.Response response = null;
+            try {
+                fetch.url = SunshineSyncAdapter.buildForecastUrl(mLocationSetting);
+                response = mResponseCache.open(fetch.url, mMetrics);
+                if (response.isNotModified()
+                        && SunshineSyncAdapter.hasCurrentForecast(mContext, mLocationSetting)) {
+                    fetch.notModified = true;
+                    return fetch;
+                }
+                InputStream body = response.getBody();
+                if (body == null) {
+                    // A 304 with the stored body gone, see SunshineSyncAdapter
+                    mResponseCache.invalidate(fetch.url);
+                    fetch.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                    return fetch;
+                }
+                ForecastJsonParser.Forecast forecast =
+                        SunshineSyncAdapter.parseForecast(mMetrics.meter(body), mMetrics);
+                switch (forecast.messageCode) {
+                    case HttpURLConnection.HTTP_OK:
+                        response.commit();
+                        fetch.forecast = forecast;
+                        break;
+                    case HttpURLConnection.HTTP_NOT_FOUND:
+                        fetch.status = SunshineSyncAdapter.LOCATION_STATUS_INVALID;
+                        break;
+                    default:
+                        fetch.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                        break;
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error fetching " + mLocationSetting, e);
+                fetch.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+            } catch (JSONException e) {
+                Log.e(LOG_TAG, e.getMessage(), e);
+                fetch.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID;
+            } finally {
+                if (response != null) {
+                    response.close();
+                }
+                fetch.latencyMillis = SystemClock.elapsedRealtime() - start;
+            }
+            return fetch;
+        }
+    }
+
+    private void commit(ContentProviderClient provider, List<CityResult> cities, Report report,
+                        SyncResult syncResult, SyncMetrics.Recorder metrics) {
+        int julianStartDay = SunshineSyncAdapter.getJulianStartDay();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        // the positions of the weather inserts, whose results carry the rows they changed
+        List<Integer> weatherOperations = new ArrayList<Integer>();
+
+        for (CityResult city : cities) {
+            ForecastJsonParser.Forecast forecast = city.forecast;
+            if (forecast == null || forecast.days.isEmpty()) {
+                continue;
+            }
+            int locationIndex = -1;
+            if (city.locationId == -1) {
+                ContentValues locationValues = new ContentValues();
+                locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, forecast.cityName);
+                locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, city.locationSetting);
+                locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, forecast.cityLatitude);
+                locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, forecast.cityLongitude);
+                locationIndex = operations.size();
+                operations.add(ContentProviderOperation
+                        .newInsert(WeatherContract.LocationEntry.CONTENT_URI)
+                        .withValues(locationValues)
+                        .build());
+            } else if (!forecast.cityName.equals(city.cityName)
+                    || forecast.cityLatitude != city.latitude
+                    || forecast.cityLongitude != city.longitude) {
+                operations.add(ContentProviderOperation
+                        .newUpdate(WeatherContract.LocationEntry.CONTENT_URI)
+                        .withSelection(WeatherContract.LocationEntry._ID + " = ?",
+                                new String[]{Long.toString(city.locationId)})
+                        .withValue(WeatherContract.LocationEntry.COLUMN_CITY_NAME, forecast.cityName)
+                        .withValue(WeatherContract.LocationEntry.COLUMN_COORD_LAT, forecast.cityLatitude)
+                        .withValue(WeatherContract.LocationEntry.COLUMN_COORD_LONG, forecast.cityLongitude)
+                        .build());
+            }
+
+            ContentValues[] rows = SunshineSyncAdapter.toWeatherRows(forecast, city.locationId, julianStartDay);
+            for (ContentValues row : rows) {
+                ContentProviderOperation.Builder builder = ContentProviderOperation
+                        .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                        .withValues(row);
+                if (locationIndex != -1) {
+                    builder.withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationIndex);
+                }
+                weatherOperations.add(operations.size());
+                operations.add(builder.build());
+            }
+        }
+
+        if (!operations.isEmpty()) {
+            try {
+                long start = System.nanoTime();
+                ContentProviderResult[] results = provider.applyBatch(operations);
+                metrics.record(SyncMetrics.STAGE_DB_TRANSACTION, System.nanoTime() - start);
+                for (int index : weatherOperations) {
+                    if (results[index].count != null) {
+                        report.rowsChanged += results[index].count;
+                    }
+                }
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Error storing forecasts", e);
+                syncResult.databaseError = true;
+                // Nothing was stored, so the cached responses must not turn the next sync into a 304
+                for (CityResult city : cities) {
+                    if (city.forecast != null) {
+                        mResponseCache.invalidate(city.url);
+                        city.status = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+                    }
+                }
+                return;
+            }
+        }
+
+        // The days that are over move into the history, in a transaction of their own: a
+        // failure there leaves them in place for the next sync, the new forecasts are stored.
+        // This runs on a pass where every city was a 304 too, since the days still run out.
+        try {
+            long start = System.nanoTime();
+            Bundle archived = provider.call(WeatherContract.METHOD_ARCHIVE_EXPIRED,
+                    Long.toString(SunshineSyncAdapter.getExpiredDate(julianStartDay)), null);
+            metrics.record(SyncMetrics.STAGE_ARCHIVE, System.nanoTime() - start);
+            report.rowsArchived = archived != null ? archived.getInt(WeatherContract.EXTRA_ARCHIVED_COUNT) : 0;
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, "Error archiving expired weather", e);
+            syncResult.databaseError = true;
+        }
+    }
+
+    private static void logReport(Report report, SyncResult syncResult) {
+        StringBuilder sb = new StringBuilder("Sync Complete. ")
+                .append(report.cities.size()).append(" locations in ").append(report.wallMillis)
+                .append(" ms (fetch ").append(report.fetchMillis)
+                .append(" ms, commit ").append(report.commitMillis).append(" ms), ")
+                .append(report.rowsChanged).append(" Changed, ")
+                .append(report.rowsArchived).append(" Archived; ");
+        for (int i = 0; i < report.cities.size(); i++) {
+            CityResult city = report.cities.get(i);
+            if (i > 0) sb.append(", ");
+            sb.append(city.locationSetting).append(' ').append(city.latencyMillis).append(" ms");
+            if (city.notModified) sb.append(" (not modified)");
+        }
+        sb.append("; ").append(syncResult.toDebugString());
+        Log.d(LOG_TAG, sb.toString());
+    }
+}
@@ -34,23 +34,22 @@ import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.SyncMetrics;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
-import com.example.android.sunshine.app.wear.WatchWeatherIntentService;
+import com.example.android.sunshine.app.wear.WearablePublisher;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Vector;
 import java.util.concurrent.ExecutionException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
@@ -62,20 +61,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
+    private static final String RESPONSE_CACHE_DIR = "forecast_responses";
 
-
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
+    // Sync extra asking for every location in the database to be refreshed, not just the
+    // preferred one.
+    public static final String SYNC_EXTRAS_ALL_LOCATIONS = "all_locations";
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
@@ -93,72 +83,59 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
+        SyncMetrics.Recorder metrics = new SyncMetrics.Recorder();
+        try {
+            // Periodic syncs refresh every location we know about; a manual sync only needs the
+            // one the user is looking at.
+            if (extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS, false)
+                    || !extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false)) {
+                syncAllLocations(provider, syncResult, metrics);
+            } else {
+                syncPreferredLocation(metrics);
+            }
+        } finally {
+            SyncMetrics.append(getContext(), metrics);
+        }
+    }
+
+    private void syncPreferredLocation(SyncMetrics.Recorder metrics) {
         Log.d(LOG_TAG, "Starting sync");
         String locationQuery = Utility.getPreferredLocation(getContext());
+        metrics.addLocations(1);
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
-
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+        // This needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        ForecastResponseCache.Response response = null;
 
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
+            URL url = buildForecastUrl(locationQuery);
+
+            // The request is conditional on the validators of the last response we stored, so
+            // when nothing changed since the last sync the server answers 304 with no body.
+            ForecastResponseCache responseCache = getResponseCache(getContext());
+            response = responseCache.open(url, metrics);
+            if (response.isNotModified() && hasCurrentForecast(getContext(), locationQuery)) {
+                Log.d(LOG_TAG, "Sync Complete. Forecast not modified");
+                setLocationStatus(getContext(), LOCATION_STATUS_OK);
                 return;
             }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
+            // Either new data, or a 304 while our rows are gone: then replay the stored body.
+            InputStream body = response.getBody();
+            if (body == null) {
+                // A 304 with the stored body gone: make the next request unconditional, and say
+                // this one failed rather than leave the last status up
+                responseCache.invalidate(url);
                 setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
                 return;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            // Parse the forecast straight off the socket rather than buffering the whole body.
+            // An empty stream surfaces as an EOFException and is handled like any other I/O error.
+            ForecastJsonParser.Forecast forecast = parseForecast(metrics.meter(body), metrics);
+            if (forecast.messageCode == HttpURLConnection.HTTP_OK) {
+                response.commit();
+            }
+            storeForecast(forecast, locationQuery, metrics);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
@@ -169,194 +146,215 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             e.printStackTrace();
             setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
+            if (response != null) {
+                response.close();
             }
         }
-        return;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     *
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Parses and closes the body, recording the time spent parsing apart from the time spent
+     * waiting for the body.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
-
-        final String OWM_MESSAGE_CODE = "cod";
-
+    static ForecastJsonParser.Forecast parseForecast(SyncMetrics.MeteredInputStream body,
+                                                     SyncMetrics.Recorder metrics)
+            throws IOException, JSONException {
+        long start = System.nanoTime();
         try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
-            }
-
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
-
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+            return ForecastJsonParser.parse(body);
+        } finally {
+            metrics.record(SyncMetrics.STAGE_PARSE, System.nanoTime() - start - body.getReadNanos());
+            body.close();
+        }
+    }
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
+    /**
+     * Refreshes every row of the location table in one pass, see {@link LocationBatchSync}.
+     */
+    private void syncAllLocations(ContentProviderClient provider, SyncResult syncResult,
+                                  SyncMetrics.Recorder metrics) {
+        Log.d(LOG_TAG, "Starting sync of all locations");
+        String preferredLocation = Utility.getPreferredLocation(getContext());
 
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        LocationBatchSync batchSync = new LocationBatchSync(getContext(), getResponseCache(getContext()));
+        LocationBatchSync.Report report = batchSync.run(provider, preferredLocation, syncResult, metrics);
 
-            // now we work exclusively in UTC
-            dayTime = new Time();
+        if (report.rowsChanged > 0 || report.rowsArchived > 0) {
+            fanOut(metrics);
+        }
+        setLocationStatus(getContext(), report.preferredLocationStatus);
+    }
 
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
+    /**
+     * Builds the OpenWeatherMap daily forecast query for the given location.
+     */
+    static URL buildForecastUrl(String locationQuery) throws MalformedURLException {
+        String format = "json";
+        String units = "metric";
+        int numDays = 14;
 
-                double high;
-                double low;
+        // Construct the URL for the OpenWeatherMap query
+        // Possible parameters are avaiable at OWM's forecast API page, at
+        // http://openweathermap.org/API#forecast
+        final String FORECAST_BASE_URL =
+                "http://api.openweathermap.org/data/2.5/forecast/daily?";
+        final String QUERY_PARAM = "q";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String DAYS_PARAM = "cnt";
+        final String APPID_PARAM = "APPID";
+
+        Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationQuery)
+                .appendQueryParameter(FORMAT_PARAM, format)
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        return new URL(builtUri.toString());
+    }
 
-                String description;
-                int weatherId;
+    private static ForecastResponseCache getResponseCache(Context context) {
+        return new ForecastResponseCache(new File(context.getCacheDir(), RESPONSE_CACHE_DIR));
+    }
 
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
+    /**
+     * @return true if there are rows from today onwards for the given location
+     */
+    static boolean hasCurrentForecast(Context context, String locationSetting) {
+        ForecastSnapshot.LocationForecast forecast = ForecastSnapshot.current().get(locationSetting);
+        if (forecast != null && forecast.getDate(forecast.getCount() - 1)
+                >= WeatherContract.normalizeDate(System.currentTimeMillis())) {
+            return true;
+        }
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(weatherUri,
+                new String[]{WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID},
+                null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
 
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
+    /**
+     * Take the forecast pulled off the wire by {@link ForecastJsonParser} and store it.
+     *
+     * The parser hands us one row per day without the location key and the date, both of which
+     * are filled in here before the rows are bulk inserted.
+     */
+    private void storeForecast(ForecastJsonParser.Forecast forecast, String locationSetting,
+                               SyncMetrics.Recorder metrics) {
+        // do we have an error?
+        switch (forecast.messageCode) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
+                return;
+            default:
+                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                return;
+        }
 
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
+        long locationId = addLocation(locationSetting, forecast.cityName,
+                forecast.cityLatitude, forecast.cityLongitude);
+
+        int julianStartDay = getJulianStartDay();
+        ContentValues[] cvArray = toWeatherRows(forecast, locationId, julianStartDay);
+        int numRows = cvArray.length;
+
+        // add to database; only the days that differ from what we have are written
+        int changedRows = 0;
+        if ( numRows > 0 ) {
+            long start = System.nanoTime();
+            changedRows = getContext().getContentResolver().bulkInsert(
+                    WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+            metrics.record(SyncMetrics.STAGE_DB_TRANSACTION, System.nanoTime() - start);
+
+            // move the days that are over into the history, out of the way of the forecast
+            start = System.nanoTime();
+            Bundle archived = getContext().getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                    WeatherContract.METHOD_ARCHIVE_EXPIRED, Long.toString(getExpiredDate(julianStartDay)), null);
+            int archivedRows = archived != null ? archived.getInt(WeatherContract.EXTRA_ARCHIVED_COUNT) : 0;
+            metrics.record(SyncMetrics.STAGE_ARCHIVE, System.nanoTime() - start);
+
+            if (changedRows > 0 || archivedRows > 0) {
+                fanOut(metrics);
+            }
+        }
+        Log.d(LOG_TAG, "Sync Complete. " + numRows + " Received, " + changedRows + " Changed");
+        setLocationStatus(getContext(), LOCATION_STATUS_OK);
+    }
 
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+    /**
+     * @return today's julian day in the local time zone, the day the first forecast row is for
+     */
+    static int getJulianStartDay() {
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
 
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
 
-                ContentValues weatherValues = new ContentValues();
+        Time dayTime = new Time();
+        dayTime.setToNow();
 
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        // we start at the day returned by local time. Otherwise this is a mess.
+        return Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+    }
 
-                cVVector.add(weatherValues);
-            }
+    /**
+     * Fills in the location key and the date of each day of the forecast.
+     */
+    static ContentValues[] toWeatherRows(ForecastJsonParser.Forecast forecast, long locationId,
+                                         int julianStartDay) {
+        // now we work exclusively in UTC
+        Time dayTime = new Time();
+
+        int numRows = forecast.days.size();
+        ContentValues[] cvArray = new ContentValues[numRows];
+        for (int i = 0; i < numRows; i++) {
+            ContentValues weatherValues = forecast.days.get(i);
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dayTime.setJulianDay(julianStartDay + i));
+            cvArray[i] = weatherValues;
+        }
+        return cvArray;
+    }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
-                updateWearable(getContext());
-                notifyWeather();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+    /**
+     * @return the normalized date of the day before the given one, the last day to archive
+     */
+    static long getExpiredDate(int julianStartDay) {
+        return new Time().setJulianDay(julianStartDay - 1);
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
-        }
+    /**
+     * Tells everything that shows the weather about the new data, timing each of them.
+     */
+    private void fanOut(SyncMetrics.Recorder metrics) {
+        long start = System.nanoTime();
+        updateWidgets();
+        long widgetsDone = System.nanoTime();
+        metrics.record(SyncMetrics.STAGE_FANOUT_WIDGETS, widgetsDone - start);
+        updateMuzei();
+        long muzeiDone = System.nanoTime();
+        metrics.record(SyncMetrics.STAGE_FANOUT_MUZEI, muzeiDone - widgetsDone);
+        updateWearable(getContext());
+        long wearableDone = System.nanoTime();
+        metrics.record(SyncMetrics.STAGE_FANOUT_WEARABLE, wearableDone - muzeiDone);
+        notifyWeather();
+        metrics.record(SyncMetrics.STAGE_FANOUT_NOTIFICATION, System.nanoTime() - wearableDone);
     }
 
     private void updateWidgets() {
@@ -378,9 +376,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     public static void updateWearable(Context context) {
-        Intent intent = new Intent(context, WatchWeatherIntentService.class);
-        intent.setAction(WatchWeatherIntentService.ACTION_SEND_WEAR_DATA);
-        context.startService(intent);
+        WearablePublisher.getInstance(context).publish();
     }
 
     private void notifyWeather() {
@@ -400,16 +396,14 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
                 String locationQuery = Utility.getPreferredLocation(context);
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
+                // the snapshot of what was just stored, the contentProvider if it does not have it
+                ForecastSnapshot.Day today = ForecastSnapshot.getToday(context, locationQuery);
 
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (today != null) {
+                    int weatherId = today.weatherId;
+                    double high = today.maxTemp;
+                    double low = today.minTemp;
+                    String desc = today.shortDesc;
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
@@ -485,7 +479,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
@@ -571,6 +564,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 context.getString(R.string.content_authority), bundle);
     }
 
+    /**
+     * Helper method to have the sync adapter refresh every known location immediately
+     * @param context The context used to access the account service
+     */
+    public static void syncAllLocationsImmediately(Context context) {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        bundle.putBoolean(SYNC_EXTRAS_ALL_LOCATIONS, true);
+        ContentResolver.requestSync(getSyncAccount(context),
+                context.getString(R.string.content_authority), bundle);
+    }
+
     /**
      * Helper method to get the fake account to be used with SyncAdapter, or make a new one
      * if the fake account doesn't exist yet.  If we make a new account, we call the
@@ -637,7 +643,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
      * @param c Context to get the PreferenceManager from.
      * @param locationStatus The IntDef value to set
      */
-    static private void setLocationStatus(Context c, @LocationStatus int locationStatus){
+    static void setLocationStatus(Context c, @LocationStatus int locationStatus){
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
         SharedPreferences.Editor spe = sp.edit();
         spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
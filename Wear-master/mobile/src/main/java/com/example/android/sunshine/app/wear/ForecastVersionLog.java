@@ -0,0 +1,223 @@
+package com.example.android.sunshine.app.wear;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.app.common.ForecastDelta;
+import com.example.android.sunshine.app.common.WeatherPayload;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The phone's side of the forecast sync: the last forecast recorded, the version at which
+ * each of its days last changed, and the version the watch acknowledged having.  Kept in a file
+ * so a restarted process still sends the watch only what it is missing.
+ */
+final class ForecastVersionLog {
+
+    private static final String LOG_TAG = ForecastVersionLog.class.getSimpleName();
+
+    private static final WeatherPayload EMPTY =
+            new WeatherPayload(true, new int[0], new int[0], new double[0], new double[0]);
+
+    private final AtomicFile mFile;
+
+    // Guarded by this
+    private long mVersion;
+    private long mAckedVersion;
+    private WeatherPayload mForecast = EMPTY;
+    private long[] mDayVersions = new long[0];
+    // The highest version handed out by next(), recorded or not, so a version whose send failed
+    // is not reused for a different forecast the watch may already hold under it
+    private long mIssuedVersion;
+
+    /**
+     * A forecast with the version at which each of its days last changed, not recorded until
+     * the watch has been sent it.
+     */
+    static final class Entry {
+        final long version;
+        final WeatherPayload forecast;
+        final long[] dayVersions;
+
+        Entry(long version, WeatherPayload forecast, long[] dayVersions) {
+            this.version = version;
+            this.forecast = forecast;
+            this.dayVersions = dayVersions;
+        }
+
+        /**
+         * @return the days that changed after the watch's version, or every day if the entry
+         * cannot tell what the watch has
+         */
+        ForecastDelta deltaSince(long watchVersion) {
+            return delta(version, forecast, dayVersions, watchVersion);
+        }
+    }
+
+    ForecastVersionLog(File file) {
+        mFile = new AtomicFile(file);
+        read();
+        mIssuedVersion = mVersion;
+    }
+
+    synchronized long getVersion() {
+        return mVersion;
+    }
+
+    synchronized long getAckedVersion() {
+        return mAckedVersion;
+    }
+
+    /**
+     * Compares the forecast with the last one recorded.
+     *
+     * @return the forecast as a new version if any of its days or its units changed, or null
+     */
+    synchronized Entry next(WeatherPayload forecast) {
+        // Compare the values as they travel, to a tenth of a degree
+        forecast = WeatherPayload.fromByteArray(forecast.toByteArray());
+        long version = mIssuedVersion + 1;
+        boolean changed = forecast.isMetric() != mForecast.isMetric();
+        long[] dayVersions = new long[forecast.getDayCount()];
+        for (int i = 0; i < dayVersions.length; i++) {
+            int old = mForecast.indexOfJulianDay(forecast.getJulianDay(i));
+            if (old != -1 && forecast.getWeatherId(i) == mForecast.getWeatherId(old)
+                    && forecast.getMaxTemp(i) == mForecast.getMaxTemp(old)
+                    && forecast.getMinTemp(i) == mForecast.getMinTemp(old)) {
+                dayVersions[i] = mDayVersions[old];
+            } else {
+                dayVersions[i] = version;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+        mIssuedVersion = version;
+        return new Entry(version, forecast, dayVersions);
+    }
+
+    /**
+     * Records an entry the watch has been sent, unless a later one was recorded since.
+     */
+    synchronized void record(Entry entry) {
+        if (entry.version <= mVersion) {
+            return;
+        }
+        mVersion = entry.version;
+        mForecast = entry.forecast;
+        mDayVersions = entry.dayVersions;
+        write();
+    }
+
+    synchronized void acknowledge(long version) {
+        if (version > mAckedVersion && version <= mVersion) {
+            mAckedVersion = version;
+            write();
+        }
+    }
+
+    /**
+     * @return the days that changed after the watch's version, or every day if the log cannot
+     * tell what the watch has
+     */
+    synchronized ForecastDelta deltaSince(long watchVersion) {
+        return delta(mVersion, mForecast, mDayVersions, watchVersion);
+    }
+
+    private static ForecastDelta delta(long version, WeatherPayload forecast, long[] dayVersions,
+                                       long watchVersion) {
+        // A watch ahead of the log synced with an earlier install of the app
+        long baseVersion = watchVersion > version ? 0 : watchVersion;
+        int count = 0;
+        for (long dayVersion : dayVersions) {
+            if (dayVersion > baseVersion) {
+                count++;
+            }
+        }
+        int[] julianDays = new int[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        int changed = 0;
+        for (int i = 0; i < dayVersions.length; i++) {
+            if (dayVersions[i] > baseVersion) {
+                julianDays[changed] = forecast.getJulianDay(i);
+                weatherIds[changed] = forecast.getWeatherId(i);
+                maxTemps[changed] = forecast.getMaxTemp(i);
+                minTemps[changed] = forecast.getMinTemp(i);
+                changed++;
+            }
+        }
+        int days = forecast.getDayCount();
+        int firstDay = days > 0 ? forecast.getJulianDay(0) : 0;
+        int lastDay = days > 0 ? forecast.getJulianDay(days - 1) : -1;
+        return new ForecastDelta(baseVersion, version, firstDay, lastDay,
+                new WeatherPayload(forecast.isMetric(), julianDays, weatherIds, maxTemps, minTemps));
+    }
+
+    // Version (long), acknowledged version (long), a version (long) per day, then the forecast
+    private void read() {
+        byte[] bytes;
+        try {
+            bytes = mFile.readFully();
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading the forecast log", e);
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long version = buffer.getLong();
+            long ackedVersion = buffer.getLong();
+            long[] dayVersions = new long[buffer.getInt()];
+            for (int i = 0; i < dayVersions.length; i++) {
+                dayVersions[i] = buffer.getLong();
+            }
+            WeatherPayload forecast = WeatherPayload.fromByteArray(
+                    Arrays.copyOfRange(bytes, buffer.position(), bytes.length));
+            if (forecast.getDayCount() != dayVersions.length) {
+                throw new IllegalArgumentException("Day versions do not match the forecast");
+            }
+            mVersion = version;
+            mAckedVersion = ackedVersion;
+            mDayVersions = dayVersions;
+            mForecast = forecast;
+        } catch (BufferUnderflowException e) {
+            // Start over: the next delta sent is a full one
+            Log.e(LOG_TAG, "Discarding a truncated forecast log", e);
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Discarding a corrupt forecast log", e);
+        }
+    }
+
+    private void write() {
+        byte[] forecast = mForecast.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 4 + 8 * mDayVersions.length + forecast.length);
+        buffer.putLong(mVersion);
+        buffer.putLong(mAckedVersion);
+        buffer.putInt(mDayVersions.length);
+        for (long dayVersion : mDayVersions) {
+            buffer.putLong(dayVersion);
+        }
+        buffer.put(forecast);
+
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            out.write(buffer.array());
+            mFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing the forecast log", e);
+            mFile.failWrite(out);
+        }
+    }
+}
@@ -10,22 +10,19 @@ import android.view.View;
 
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.common.Constants;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.app.common.GoogleApiTransport;
+import com.example.android.sunshine.app.common.WearableConnection;
+import com.example.android.sunshine.app.common.WearableTransport;
 
-public class WatchSettingsActivity extends AppCompatActivity implements WatchColorSelectDailog.Listener, GoogleApiClient.ConnectionCallbacks,
-        GoogleApiClient.OnConnectionFailedListener {
+public class WatchSettingsActivity extends AppCompatActivity implements WatchColorSelectDailog.Listener {
 
     // Logging Identifier for the class
     private static String LOG_TAG = WatchSettingsActivity.class.getSimpleName();
 
     private static final String TAG_BACKGROUND_COLOUR_CHOOSER = "background_chooser";
     private static final String TAG_DATE_AND_TIME_COLOUR_CHOOSER = "date_time_chooser";
-    // To synchronize with the data layer API, we have to firstly connect to it through a GoogleApiClient object
-    private GoogleApiClient mGoogleApiClient;
+    // The data layer connection shared by the app, kept open while the activity is started
+    private WearableConnection mConnection;
     private WatchFaceConfigurationPreferences mWatchFaceConfigurationPreferences;
     private View mBackgroundColourImagePreview;
     private View mDateAndTimeColourImagePreview;
@@ -58,11 +55,7 @@ public class WatchSettingsActivity extends AppCompatActivity implements WatchCol
         mDateAndTimeColourImagePreview = findViewById(R.id.configuration_date_and_time_colour_preview);
         mWatchFaceConfigurationPreferences = WatchFaceConfigurationPreferences.newInstance(this);
 
-        mGoogleApiClient = new GoogleApiClient.Builder(this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
+        mConnection = GoogleApiTransport.getSharedConnection(this);
     }
 
 
@@ -77,52 +70,39 @@ public class WatchSettingsActivity extends AppCompatActivity implements WatchCol
     }
 
     @Override
-    public void onColourSelected(String colour, String tag) {
-        PutDataMapRequest putDataMapReq = PutDataMapRequest.create(Constants.WATCH_FACE_SETTINGS_PATH);
-
+    public void onColourSelected(final String colour, String tag) {
+        final String key;
         if (TAG_BACKGROUND_COLOUR_CHOOSER.equals(tag)) {
             mBackgroundColourImagePreview.setBackgroundColor(Color.parseColor(colour));
             mWatchFaceConfigurationPreferences.setBackgroundColour(Color.parseColor(colour));
-            putDataMapReq.getDataMap().putString("KEY_BACKGROUND_COLOUR", colour);
+            key = "KEY_BACKGROUND_COLOUR";
         } else {
             mDateAndTimeColourImagePreview.setBackgroundColor(Color.parseColor(colour));
             mWatchFaceConfigurationPreferences.setBackgroundColour(Color.parseColor(colour));
-            putDataMapReq.getDataMap().putString("KEY_DATE_TIME_COLOUR", colour);
+            key = "KEY_DATE_TIME_COLOUR";
         }
 
         Log.d(LOG_TAG, "onColorSelected" + colour);
 
-        PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, putDataReq);
+        // Sent once connected, should the connection still be in the making
+        mConnection.submit(new WearableConnection.Request() {
+            @Override
+            public boolean run(WearableTransport transport) {
+                return transport.putString(Constants.WATCH_FACE_SETTINGS_PATH, key, colour);
+            }
+        });
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        mGoogleApiClient.connect();
+        mConnection.acquire();
     }
 
     @Override
     protected void onStop() {
-        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-            mGoogleApiClient.disconnect();
-        }
+        mConnection.release();
         super.onStop();
     }
-
-    @Override
-    public void onConnected(Bundle bundle) {
-        Log.d(LOG_TAG, "onConnected");
-    }
-
-    @Override
-    public void onConnectionSuspended(int i) {
-        Log.d(LOG_TAG, "onConnectionSuspended");
-    }
-
-    @Override
-    public void onConnectionFailed(ConnectionResult connectionResult) {
-        Log.d(LOG_TAG, "onConnectionFailed");
-    }
 }
 
@@ -0,0 +1,61 @@
+package com.example.android.sunshine.app.wear;
+
+import android.content.Context;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.common.WeatherPayload;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.TimeZone;
+
+/**
+ * Builds the forecast sent to the watch.
+ */
+final class WearPayloads {
+
+    private WearPayloads() {
+    }
+
+    /**
+     * The forecast of the preferred location from today on, from the snapshot of the last sync,
+     * or just today's from the provider when the snapshot does not have it.
+     *
+     * @return the payload, or null if there is no weather for today
+     */
+    static WeatherPayload forPreferredLocation(Context context) {
+        String locationSetting = Utility.getPreferredLocation(context);
+        boolean metric = Utility.isMetric(context);
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+
+        ForecastSnapshot.LocationForecast forecast = ForecastSnapshot.current().get(locationSetting);
+        int first = forecast != null ? forecast.indexOfFirstDayFrom(today) : -1;
+        if (first != -1) {
+            int count = forecast.getCount() - first;
+            int[] julianDays = new int[count];
+            int[] weatherIds = new int[count];
+            double[] maxTemps = new double[count];
+            double[] minTemps = new double[count];
+            for (int i = 0; i < count; i++) {
+                julianDays[i] = getJulianDay(forecast.getDate(first + i));
+                weatherIds[i] = forecast.getWeatherId(first + i);
+                maxTemps[i] = forecast.getMaxTemp(first + i);
+                minTemps[i] = forecast.getMinTemp(first + i);
+            }
+            return new WeatherPayload(metric, julianDays, weatherIds, maxTemps, minTemps);
+        }
+
+        ForecastSnapshot.Day day = ForecastSnapshot.getToday(context, locationSetting);
+        if (day == null) {
+            return null;
+        }
+        return new WeatherPayload(metric, new int[]{getJulianDay(day.date)}, new int[]{day.weatherId},
+                new double[]{day.maxTemp}, new double[]{day.minTemp});
+    }
+
+    // Weather dates are local midnights
+    private static int getJulianDay(long date) {
+        return Time.getJulianDay(date, TimeZone.getDefault().getOffset(date) / 1000);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.android.sunshine.app.wear;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.example.android.sunshine.app.common.Constants;
+import com.example.android.sunshine.app.common.ForecastDelta;
+import com.example.android.sunshine.app.common.GoogleApiTransport;
+import com.example.android.sunshine.app.common.WearableConnection;
+import com.example.android.sunshine.app.common.WearableTransport;
+import com.example.android.sunshine.app.common.WeatherPayload;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the forecast to the watch after a sync, without waking it for nothing.
+ *
+ * Publish requests that arrive within the coalescing window of a pending one are folded into
+ * it, and the forecast is only read when the window closes, so a burst of syncs costs one
+ * publish.  A forecast identical to the last one published is not sent at all, and otherwise
+ * only the days that changed since the version the watch acknowledged are.  Publishing runs
+ * on a thread of its own, over the process's shared connection, which it keeps open.
+ */
+public final class WearablePublisher {
+
+    private static final String LOG_TAG = WearablePublisher.class.getSimpleName();
+
+    static final long DEFAULT_COALESCE_WINDOW_MS = TimeUnit.SECONDS.toMillis(2);
+    private static final String LOG_FILE_NAME = "wear_forecast_log.bin";
+    private static final long SEND_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Reads the forecast to publish.
+     */
+    interface Source {
+        /**
+         * @return the forecast, or null if there is none to publish
+         */
+        WeatherPayload load();
+    }
+
+    /**
+     * Sends an encoded {@link ForecastDelta} to the watch.  Called on the publisher's thread, so it may block.
+     */
+    interface Sender {
+        /**
+         * @return whether the payload was sent
+         */
+        boolean send(byte[] payload);
+    }
+
+    private static WearablePublisher sInstance;
+
+    private final long mCoalesceWindowMs;
+    private final Source mSource;
+    private final Sender mSender;
+    private final ForecastVersionLog mLog;
+    private final Handler mHandler;
+
+    // Guarded by this
+    private boolean mPending;
+    private int mSentCount;
+    private int mSuppressedCount;
+    private int mCoalescedCount;
+
+    private final Runnable mPublishRunnable = new Runnable() {
+        @Override
+        public void run() {
+            publishNow();
+        }
+    };
+
+    public static synchronized WearablePublisher getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new WearablePublisher(DEFAULT_COALESCE_WINDOW_MS,
+                    new Source() {
+                        @Override
+                        public WeatherPayload load() {
+                            return WearPayloads.forPreferredLocation(appContext);
+                        }
+                    },
+                    new ConnectionSender(GoogleApiTransport.getSharedConnection(appContext)),
+                    new ForecastVersionLog(new File(appContext.getFilesDir(), LOG_FILE_NAME)));
+        }
+        return sInstance;
+    }
+
+    WearablePublisher(long coalesceWindowMs, Source source, Sender sender, ForecastVersionLog log) {
+        mCoalesceWindowMs = coalesceWindowMs;
+        mSource = source;
+        mSender = sender;
+        mLog = log;
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Publishes the current forecast once the coalescing window closes, unless the watch
+     * already has it.
+     */
+    public void publish() {
+        synchronized (this) {
+            if (mPending) {
+                mCoalescedCount++;
+                return;
+            }
+            mPending = true;
+        }
+        mHandler.postDelayed(mPublishRunnable, mCoalesceWindowMs);
+    }
+
+    /**
+     * Sends the watch the days it is missing, for when it asks with the version it has.
+     */
+    public void resync(final long watchVersion) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mLog.getVersion() == 0) {
+                    // Nothing recorded yet, after a reinstall for instance
+                    publishNow();
+                } else if (watchVersion != mLog.getVersion()) {
+                    send(mLog.deltaSince(watchVersion));
+                }
+            }
+        });
+    }
+
+    /**
+     * Records that the watch applied the given version, so later deltas start from it.
+     */
+    public void acknowledge(final long watchVersion) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mLog.acknowledge(watchVersion);
+            }
+        });
+    }
+
+    private void publishNow() {
+        synchronized (this) {
+            mPending = false;
+        }
+        WeatherPayload payload = mSource.load();
+        if (payload == null) {
+            return;
+        }
+        ForecastVersionLog.Entry next = mLog.next(payload);
+        if (next == null) {
+            synchronized (this) {
+                mSuppressedCount++;
+            }
+            Log.d(LOG_TAG, "Forecast unchanged, not publishing");
+            return;
+        }
+        // Recorded only once sent, so after a failed send the next publish still differs
+        if (send(next.deltaSince(mLog.getAckedVersion()))) {
+            mLog.record(next);
+        }
+    }
+
+    private boolean send(ForecastDelta delta) {
+        byte[] bytes = delta.toByteArray();
+        if (!mSender.send(bytes)) {
+            return false;
+        }
+        synchronized (this) {
+            mSentCount++;
+        }
+        Log.d(LOG_TAG, "Published " + delta.getDays().getDayCount() + " days from version "
+                + delta.getBaseVersion() + " to " + delta.getVersion() + " in " + bytes.length + " bytes");
+        return true;
+    }
+
+    // Deltas sent to the watch
+    public synchronized int getSentCount() {
+        return mSentCount;
+    }
+
+    // Forecasts not sent because the watch already had them
+    public synchronized int getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    // Publish requests folded into a pending one
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Puts the delta in the weather delta data item over the process's shared connection, which
+     * the publisher keeps open.
+     */
+    private static class ConnectionSender implements Sender {
+        private final WearableConnection mConnection;
+
+        ConnectionSender(WearableConnection connection) {
+            mConnection = connection;
+            mConnection.acquire();
+        }
+
+        @Override
+        public boolean send(final byte[] delta) {
+            boolean sent = mConnection.execute(new WearableConnection.Request() {
+                @Override
+                public boolean run(WearableTransport transport) {
+                    return transport.putBytes(Constants.WEATHER_DELTA_PATH, Constants.WEATHER_KEY_DELTA, delta);
+                }
+            }, SEND_TIMEOUT_MS);
+            if (!sent) {
+                Log.d(LOG_TAG, "Failed to publish");
+            }
+            return sent;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.sunshine.app.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+public class TestDigitalWatchFace extends AndroidTestCase {
+
+    private static final int SIZE = 320;
+    private static final int WARM_UP_TICKS = 10;
+    private static final int TICKS = 120;
+    private static final long SECOND_IN_MILLIS = 1000;
+    private static final long MINUTE_IN_MILLIS = 60 * SECOND_IN_MILLIS;
+
+    public void testTimeText() {
+        TimeText text = new TimeText();
+        text.set(9, 5, 7, true);
+        assertEquals("09.05.07", new String(text.getChars(), 0, text.length()));
+        text.set(23, 59, 0, false);
+        assertEquals("23.59", new String(text.getChars(), 0, text.length()));
+        text.setDate(3, 11, 2016);
+        assertEquals("03.11.2016", new String(text.getChars(), 0, text.length()));
+        text.set(23, 59, 0, false);
+
+        Paint paint = new Paint();
+        paint.setTextSize(40);
+        assertEquals(paint.measureText("23.59"), text.measure(paint), 1.0f);
+        paint.setTextSize(20);
+        assertEquals("Error: the glyph widths were not measured again for the new text size",
+                paint.measureText("23.59"), text.measure(paint), 1.0f);
+    }
+
+    public void testTickAllocatesNothing() {
+        DigitalWatchFace face = DigitalWatchFace.newInstance(mContext);
+        face.setRound(false);
+        assertTicksAllocateNothing(face, SECOND_IN_MILLIS);
+    }
+
+    public void testAmbientTickAllocatesNothing() {
+        DigitalWatchFace face = DigitalWatchFace.newInstance(mContext);
+        face.setRound(false);
+        face.setAmbientMode(true);
+        face.setShowSeconds(false);
+        face.setLowBitAmbient(true);
+        face.setBurnInProtection(true);
+        assertTicksAllocateNothing(face, MINUTE_IN_MILLIS);
+    }
+
+    private void assertTicksAllocateNothing(DigitalWatchFace face, long tick) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+
+        // Starting at 9, so the ticks do not cross into another day and draw a new date
+        Time morning = new Time();
+        morning.setToNow();
+        morning.set(0, 0, 9, morning.monthDay, morning.month, morning.year);
+        long timeMillis = morning.toMillis(false);
+        for (int i = 0; i < WARM_UP_TICKS; i++) {
+            face.draw(canvas, bounds, timeMillis);
+            timeMillis += tick;
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < TICKS; i++) {
+                face.draw(canvas, bounds, timeMillis);
+                timeMillis += tick;
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        assertEquals("Error: drawing a tick allocated", 0, Debug.getThreadAllocCount());
+
+        face.release();
+        bitmap.recycle();
+    }
+}
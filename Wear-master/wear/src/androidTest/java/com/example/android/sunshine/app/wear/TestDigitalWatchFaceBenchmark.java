@@ -0,0 +1,125 @@
+package com.example.android.sunshine.app.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.common.WeatherPayload;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Renders a run of ticks of the watch face to an offscreen canvas, square and round, in
+    interactive and then ambient mode, and logs the draw time percentiles, to compare rendering
+    changes on a real watch.
+ */
+public class TestDigitalWatchFaceBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDigitalWatchFaceBenchmark.class.getSimpleName();
+
+    private static final int SIZE = 320;
+    private static final int TICKS = 10000;
+    private static final int WARM_UP_TICKS = 100;
+
+    // Sample weather so the weather block is part of what gets drawn
+    private static final int SAMPLE_DAYS = 14;
+    private static final int SAMPLE_WEATHER_ID = 500;
+    private static final double SAMPLE_HIGH = 21;
+    private static final double SAMPLE_LOW = 12;
+
+    public void testSquareFace() {
+        benchmark(false);
+    }
+
+    public void testRoundFace() {
+        benchmark(true);
+    }
+
+    private void benchmark(boolean isRound) {
+        String shape = isRound ? "round" : "square";
+        DigitalWatchFace face = DigitalWatchFace.newInstance(mContext);
+        face.setRound(isRound);
+        face.updateWeather(createSampleWeather());
+
+        Result interactive = run(face, SIZE, SIZE, TICKS, TimeUnit.SECONDS.toMillis(1));
+        Log.i(LOG_TAG, TICKS + " interactive ticks, " + shape + " at " + SIZE + "x" + SIZE + ": " + interactive);
+
+        face.setAmbientMode(true);
+        face.setShowSeconds(false);
+        face.setAntiAlias(false);
+        Result ambient = run(face, SIZE, SIZE, TICKS, TimeUnit.MINUTES.toMillis(1));
+        Log.i(LOG_TAG, TICKS + " ambient ticks, " + shape + " at " + SIZE + "x" + SIZE + ": " + ambient);
+        face.release();
+    }
+
+    // Two weeks from today, covering the days the runs go through
+    private static WeatherPayload createSampleWeather() {
+        long now = System.currentTimeMillis();
+        int today = Time.getJulianDay(now, TimeZone.getDefault().getOffset(now) / 1000);
+        int[] julianDays = new int[SAMPLE_DAYS];
+        int[] weatherIds = new int[SAMPLE_DAYS];
+        double[] maxTemps = new double[SAMPLE_DAYS];
+        double[] minTemps = new double[SAMPLE_DAYS];
+        for (int i = 0; i < SAMPLE_DAYS; i++) {
+            julianDays[i] = today + i;
+            weatherIds[i] = SAMPLE_WEATHER_ID;
+            maxTemps[i] = SAMPLE_HIGH;
+            minTemps[i] = SAMPLE_LOW;
+        }
+        return new WeatherPayload(true, julianDays, weatherIds, maxTemps, minTemps);
+    }
+
+    /**
+     * Draws the face once per simulated tick, a second in interactive mode and a minute in
+     * ambient mode, so the run crosses day boundaries the way a watch left on would.
+     */
+    private static Result run(DigitalWatchFace face, int width, int height, int ticks, long tick) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Rect bounds = new Rect(0, 0, width, height);
+        long timeMillis = System.currentTimeMillis();
+
+        for (int i = 0; i < WARM_UP_TICKS; i++) {
+            face.draw(canvas, bounds, timeMillis);
+            timeMillis += tick;
+        }
+
+        long[] samples = new long[ticks];
+        for (int i = 0; i < ticks; i++) {
+            long start = System.nanoTime();
+            face.draw(canvas, bounds, timeMillis);
+            samples[i] = System.nanoTime() - start;
+            timeMillis += tick;
+        }
+        bitmap.recycle();
+
+        Arrays.sort(samples);
+        return new Result(samples);
+    }
+
+    /**
+     * Draw time percentiles, in microseconds.
+     */
+    private static final class Result {
+        final long p50Micros;
+        final long p99Micros;
+        final long maxMicros;
+
+        // samples must be sorted
+        Result(long[] samples) {
+            p50Micros = TimeUnit.NANOSECONDS.toMicros(samples[samples.length / 2]);
+            p99Micros = TimeUnit.NANOSECONDS.toMicros(samples[(int) (samples.length * 0.99)]);
+            maxMicros = TimeUnit.NANOSECONDS.toMicros(samples[samples.length - 1]);
+        }
+
+        @Override
+        public String toString() {
+            return "p50 " + p50Micros + "us, p99 " + p99Micros + "us, max " + maxMicros + "us";
+        }
+    }
+}
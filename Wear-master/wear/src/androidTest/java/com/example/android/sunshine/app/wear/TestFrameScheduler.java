@@ -0,0 +1,34 @@
+package com.example.android.sunshine.app.wear;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+public class TestFrameScheduler extends AndroidTestCase {
+
+    public void testTicksAlignToTheSecond() {
+        assertEquals(1000, FrameScheduler.delayToNextTick(1419033600000L, 1000));
+        assertEquals(250, FrameScheduler.delayToNextTick(1419033600750L, 1000));
+        assertEquals(1, FrameScheduler.delayToNextTick(1419033600999L, 1000));
+    }
+
+    public void testRequestsAndFramesAreCounted() {
+        final int[] requested = new int[1];
+        FrameScheduler scheduler = new FrameScheduler(new Handler(Looper.getMainLooper()),
+                new FrameScheduler.Callback() {
+                    @Override
+                    public void onFrameRequested() {
+                        requested[0]++;
+                    }
+                });
+        // A burst of data events and a tick, all before the next vsync
+        for (int i = 0; i < 4; i++) {
+            scheduler.requestFrame();
+        }
+        assertEquals("Error: every request should go straight to invalidate()", 4, requested[0]);
+
+        scheduler.onFrameDrawn();
+        assertEquals(1, scheduler.getFrameCount());
+        assertEquals(4, scheduler.getRequestCount());
+    }
+}
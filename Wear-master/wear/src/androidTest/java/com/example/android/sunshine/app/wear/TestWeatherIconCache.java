@@ -0,0 +1,24 @@
+package com.example.android.sunshine.app.wear;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+
+public class TestWeatherIconCache extends AndroidTestCase {
+
+    private static final int HEIGHT = 40;
+
+    public void testIconsAreScaledOnceAndReused() {
+        WeatherIconCache cache = new WeatherIconCache(mContext.getResources());
+        Bitmap icon = cache.get(R.drawable.ic_clear, HEIGHT);
+        assertEquals(HEIGHT, icon.getHeight());
+        assertSame(icon, cache.get(R.drawable.ic_clear, HEIGHT));
+
+        assertNotSame(icon, cache.get(R.drawable.ic_clear, HEIGHT * 2));
+        assertNull(cache.get(-1, HEIGHT));
+
+        cache.clear();
+        assertTrue("Error: cleared icons were not recycled", icon.isRecycled());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.sunshine.app.wear;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.common.ForecastDelta;
+import com.example.android.sunshine.app.common.ForecastStore;
+import com.example.android.sunshine.app.common.WeatherPayload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class TestWeatherSnapshot extends AndroidTestCase {
+
+    private static final int FIRST_DAY = 2457696;
+    private static final long UPDATE_TIME = 1419033600000L;
+    private static final String FILE_NAME = "test_weather_snapshot.bin";
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getFilesDir(), FILE_NAME);
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testSnapshotRestoresTheStore() {
+        assertNull("Error: a missing snapshot should read as none", WeatherSnapshot.read(mFile));
+
+        ForecastStore store = new ForecastStore();
+        store.apply(new ForecastDelta(0, 7, FIRST_DAY, FIRST_DAY + 1,
+                new WeatherPayload(true, new int[]{FIRST_DAY, FIRST_DAY + 1}, new int[]{800, 500},
+                        new double[]{21, 18}, new double[]{12, 10})));
+        WeatherSnapshot.write(mFile, store, UPDATE_TIME);
+
+        WeatherSnapshot snapshot = WeatherSnapshot.read(mFile);
+        assertNotNull(snapshot);
+        assertEquals(7, snapshot.getVersion());
+        assertEquals(UPDATE_TIME, snapshot.getUpdateTime());
+        ForecastStore restored = snapshot.toForecastStore();
+        assertEquals(7, restored.getVersion());
+        assertEquals(2, restored.getForecast().getDayCount());
+        assertEquals(500, restored.getForecast().getWeatherId(1));
+    }
+
+    public void testOldSnapshotsAreStale() {
+        ForecastStore store = new ForecastStore();
+        WeatherSnapshot.write(mFile, store, UPDATE_TIME);
+        WeatherSnapshot snapshot = WeatherSnapshot.read(mFile);
+
+        assertFalse(snapshot.isStale(UPDATE_TIME + WeatherSnapshot.MAX_AGE_MS));
+        assertTrue(snapshot.isStale(UPDATE_TIME + WeatherSnapshot.MAX_AGE_MS + 1));
+        assertTrue("Error: a snapshot from the future should be stale", snapshot.isStale(UPDATE_TIME - 1));
+    }
+
+    public void testCorruptSnapshotIsDiscarded() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(new byte[]{1, 2, 3});
+        } finally {
+            out.close();
+        }
+        assertNull(WeatherSnapshot.read(mFile));
+    }
+}
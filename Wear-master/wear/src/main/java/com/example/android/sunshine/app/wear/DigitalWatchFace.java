@@ -8,17 +8,17 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.text.format.Time;
 import android.util.Log;
 import android.view.WindowInsets;
 
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.common.Constants;
+import com.example.android.sunshine.app.common.WeatherPayload;
 import com.google.android.gms.wearable.DataMap;
 
+import java.util.TimeZone;
+
 /**
  * See <a hred="http://developer.android.com/training/wearables/watch-faces/service.html">Building a Watch Face Service</a>
  * See <a hred="http://catinean.com/2015/03/07/creating-a-watch-face-with-android-wear-api/">Creating a Watchface with Android Wear | PART 1</a>
@@ -28,9 +28,9 @@ public class DigitalWatchFace {
     // Logging Identifier for the class
     private static String LOG_TAG = DigitalWatchFace.class.getSimpleName();
 
-    private static final String TIME_FORMAT_WITHOUT_SECONDS = "%02d.%02d";
-    private static final String TIME_FORMAT_WITH_SECONDS = TIME_FORMAT_WITHOUT_SECONDS + ".%02d";
     private static final String DATE_FORMAT = "%02d.%02d.%d";
+    private static final String TIME_HEIGHT_SAMPLE = "00.00.00";
+    private static final int SECONDS_IN_DAY = 24 * 60 * 60;
 
     // Font types
     private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
@@ -45,9 +45,17 @@ public class DigitalWatchFace {
     private final Paint mTextTimePaint;
     private final Paint mTextDatePaint;
     private final Time mTime;
-
-    // Weather display fields
-    private Bitmap mWeatherIcon;
+    private final TimeZone mTimeZone;
+    private final TimeText mTimeText = new TimeText();
+    // The date drawn into the static layer, formatted once per day
+    private String mDateText;
+    private int mDateTextDay;
+
+    // Weather display fields, for the day of mWeatherDay in mWeatherPayload
+    private WeatherPayload mWeatherPayload;
+    private int mWeatherDay = -1;
+    private int mWeatherIconResource = -1;
+    private final WeatherIconCache mWeatherIcons;
     private String mWeatherHigh;
     private String mWeatherLow;
 
@@ -55,6 +63,14 @@ public class DigitalWatchFace {
     private float mDateYOffset;
     private float mDividerYOffset;
     private float mWeatherYOffset;
+    private float mTimeYOffset;
+
+    // Background, date and weather, drawn once and copied under the time on every tick
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+    private boolean mStaticLayerDirty = true;
+    // Julian day of the date drawn into the static layer
+    private int mStaticLayerDay;
 
     private static final int DATE_AND_TIME_DEFAULT_COLOUR = Color.WHITE;
     private static final int BACKGROUND_DEFAULT_COLOUR = Color.BLACK;
@@ -63,6 +79,18 @@ public class DigitalWatchFace {
     private int dateAndTimeColour = DATE_AND_TIME_DEFAULT_COLOUR;
 
     private boolean shouldShowSeconds = true;
+    private boolean mAmbient;
+
+    // Ambient mode draws the time and date from glyph atlases, shifted every minute when the
+    // display needs protecting from burn-in
+    private static final int BURN_IN_SHIFT_PX = 4;
+    private final Paint mAmbientPaint = new Paint();
+    private final TimeText mAmbientDate = new TimeText();
+    private int mAmbientDateDay = -1;
+    private GlyphAtlas mAmbientTimeGlyphs;
+    private GlyphAtlas mAmbientDateGlyphs;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
     private static Resources resources;
 
     public static DigitalWatchFace newInstance(Context context) {
@@ -97,40 +125,130 @@ public class DigitalWatchFace {
         textTempLowPaint.setTypeface(NORMAL_TYPEFACE);
         textTempLowPaint.setAntiAlias(true);
 
-        return new DigitalWatchFace(timePaint, datePaint, backgroundPaint, textTempHighPaint, textTempLowPaint, new Time());
+        return new DigitalWatchFace(timePaint, datePaint, backgroundPaint, textTempHighPaint, textTempLowPaint, new Time(), new WeatherIconCache(resources));
     }
 
-    DigitalWatchFace(Paint timePaint, Paint datePaint, Paint backgroundPaint, Paint textTempHighPaint, Paint textTempLowPaint, Time time) {
+    DigitalWatchFace(Paint timePaint, Paint datePaint, Paint backgroundPaint, Paint textTempHighPaint, Paint textTempLowPaint, Time time, WeatherIconCache weatherIcons) {
         this.mTextTimePaint = timePaint;
         this.mTextDatePaint = datePaint;
         this.mTextTempHighPaint = textTempHighPaint;
         this.mTextTempLowPaint = textTempLowPaint;
         this.backgroundPaint = backgroundPaint;
         this.mTime = time;
+        this.mWeatherIcons = weatherIcons;
+        this.mTimeZone = TimeZone.getTimeZone(time.timezone);
     }
 
     // Perform all the drawing operations on the canvas.
     public void draw(Canvas canvas, Rect bounds) {
-        // Place the mTime to the current mTime
-        mTime.setToNow();
+        draw(canvas, bounds, System.currentTimeMillis());
+    }
+
+    // Only the time changes from one tick to the next: everything else is drawn once into the
+    // static layer, which each tick copies onto the canvas before drawing the time over it.
+    void draw(Canvas canvas, Rect bounds, long timeMillis) {
+        // The hour, minute and second are worked out here rather than with mTime, which is only
+        // set when the date has to be drawn again, so that a tick allocates nothing.
+        int gmtOffsetMillis = mTimeZone.getOffset(timeMillis);
+        int julianDay = Time.getJulianDay(timeMillis, gmtOffsetMillis / 1000);
+        int secondOfDay = (int) (((timeMillis + gmtOffsetMillis) / 1000) % SECONDS_IN_DAY);
+        if (mAmbient) {
+            drawAmbient(canvas, bounds, timeMillis, julianDay, secondOfDay);
+            return;
+        }
+        if (mStaticLayerDirty || julianDay != mStaticLayerDay || !staticLayerFits(bounds)) {
+            // Place the mTime to the given mTime
+            mTime.set(timeMillis);
+            rebuildStaticLayer(bounds, julianDay);
+            mStaticLayerDay = julianDay;
+            mStaticLayerDirty = false;
+        }
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+        mTimeText.set(secondOfDay / 3600, (secondOfDay / 60) % 60, secondOfDay % 60, shouldShowSeconds);
+        float timeXOffset = bounds.exactCenterX() - (mTimeText.measure(mTextTimePaint) / 2.0f);
+        // Draw the mTime
+        canvas.drawText(mTimeText.getChars(), 0, mTimeText.length(), timeXOffset, mTimeYOffset, mTextTimePaint);
+    }
+
+    // Ambient mode shows the time, without seconds, and the date: no weather, no bitmaps other
+    // than the glyphs, and nothing measured.
+    private void drawAmbient(Canvas canvas, Rect bounds, long timeMillis, int julianDay, int secondOfDay) {
+        if (mAmbientTimeGlyphs == null || mAmbientTimeGlyphs.getTextSize() != mTextTimePaint.getTextSize()) {
+            releaseAmbientGlyphs();
+            mAmbientTimeGlyphs = new GlyphAtlas(mTextTimePaint.getTextSize(), mTextTimePaint.getTypeface());
+            mAmbientDateGlyphs = new GlyphAtlas(mTextDatePaint.getTextSize(), mTextDatePaint.getTypeface());
+        }
+        if (julianDay != mAmbientDateDay) {
+            mTime.set(timeMillis);
+            mAmbientDate.setDate(mTime.monthDay, mTime.month + 1, mTime.year);
+            mAmbientDateDay = julianDay;
+        }
+        int minuteOfDay = secondOfDay / 60;
+        mTimeText.set(minuteOfDay / 60, minuteOfDay % 60, 0, false);
+
+        int xShift = 0;
+        int yShift = 0;
+        if (mBurnInProtection) {
+            // Move through a 3x3 grid of positions, one step a minute
+            xShift = (minuteOfDay % 3 - 1) * BURN_IN_SHIFT_PX;
+            yShift = ((minuteOfDay / 3) % 3 - 1) * BURN_IN_SHIFT_PX;
+        }
+
+        canvas.drawColor(backgroundPaint.getColor());
+        // Low-bit displays only show a few colours, so draw in plain white rather than grey
+        mAmbientPaint.setColor(mLowBitAmbient ? Color.WHITE : mTextTimePaint.getColor());
+
+        int timeBaseline = bounds.centerY() + mAmbientTimeGlyphs.getDigitHeight() / 2 + yShift;
+        int timeWidth = mAmbientTimeGlyphs.measure(mTimeText.getChars(), mTimeText.length());
+        mAmbientTimeGlyphs.draw(canvas, mTimeText.getChars(), mTimeText.length(),
+                bounds.centerX() - timeWidth / 2 + xShift, timeBaseline, mAmbientPaint);
+
+        int dateBaseline = timeBaseline + mAmbientDateGlyphs.getDigitHeight() + 10;
+        int dateWidth = mAmbientDateGlyphs.measure(mAmbientDate.getChars(), mAmbientDate.length());
+        mAmbientDateGlyphs.draw(canvas, mAmbientDate.getChars(), mAmbientDate.length(),
+                bounds.centerX() - dateWidth / 2 + xShift, dateBaseline, mAmbientPaint);
+    }
+
+    private void releaseAmbientGlyphs() {
+        if (mAmbientTimeGlyphs != null) {
+            mAmbientTimeGlyphs.recycle();
+            mAmbientDateGlyphs.recycle();
+            mAmbientTimeGlyphs = null;
+            mAmbientDateGlyphs = null;
+        }
+    }
+
+    // Draw the background, the date and the weather into the static layer, reusing its bitmap
+    // as long as the watch bounds stay the same.
+    private void rebuildStaticLayer(Rect bounds, int julianDay) {
+        if (!staticLayerFits(bounds)) {
+            releaseStaticLayer();
+            mStaticLayer = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        }
+        Canvas canvas = mStaticLayerCanvas;
         // Set the background color of canvas
         canvas.drawRect(0, 0, bounds.width(), bounds.height(), backgroundPaint);
 
-        String timeText = String.format(shouldShowSeconds ? TIME_FORMAT_WITH_SECONDS : TIME_FORMAT_WITHOUT_SECONDS, mTime.hour, mTime.minute, mTime.second);
-        float timeXOffset = computeXOffset(timeText, mTextTimePaint, bounds);
-        float timeYOffset = computeTimeYOffset(timeText, mTextTimePaint, bounds);
-        // Draw the mTime
-        canvas.drawText(timeText, timeXOffset, timeYOffset, mTextTimePaint);
+        // Every digit has the same height, so the time stays at the same place whatever it reads
+        mTimeYOffset = computeTimeYOffset(TIME_HEIGHT_SAMPLE, mTextTimePaint, bounds);
 
-        String dateText = String.format(DATE_FORMAT, mTime.monthDay, (mTime.month + 1), mTime.year);
+        if (mDateText == null || julianDay != mDateTextDay) {
+            mDateText = String.format(DATE_FORMAT, mTime.monthDay, (mTime.month + 1), mTime.year);
+            mDateTextDay = julianDay;
+        }
+        String dateText = mDateText;
         float dateXOffset = computeXOffset(dateText, mTextDatePaint, bounds);
         float dateYOffset = computeDateYOffset(dateText, mTextDatePaint);
         // Draw the date
-        canvas.drawText(dateText, dateXOffset, timeYOffset + dateYOffset, mTextDatePaint);
+        canvas.drawText(dateText, dateXOffset, mTimeYOffset + dateYOffset, mTextDatePaint);
 
         // Draw high and low temp if we have it
-        if (mWeatherHigh != null && mWeatherLow != null && mWeatherIcon != null) {
-            Log.d(LOG_TAG, "weatherIcon: " + mWeatherIcon + " maxTemp: " + mWeatherHigh + " minTemp: " + mWeatherLow);
+        selectWeatherDay(julianDay);
+        Bitmap weatherIcon = mWeatherIcons.get(mWeatherIconResource, getWeatherIconHeight());
+        if (mWeatherHigh != null && mWeatherLow != null && weatherIcon != null) {
+            Log.d(LOG_TAG, "weatherIcon: " + weatherIcon + " maxTemp: " + mWeatherHigh + " minTemp: " + mWeatherLow);
             // Draw a line to separate date and time from weather elements
             canvas.drawLine(bounds.centerX() - 20, mDividerYOffset, bounds.centerX() + 20, mDividerYOffset, mTextDatePaint);
 
@@ -139,15 +257,74 @@ public class DigitalWatchFace {
             float xOffset = bounds.centerX() - (highTextLen / 2);
             canvas.drawText(mWeatherHigh, xOffset, mWeatherYOffset, mTextTempHighPaint);
             canvas.drawText(mWeatherLow, bounds.centerX() + (highTextLen / 2) + 20, mWeatherYOffset, mTextTempLowPaint);
-            float iconXOffset = bounds.centerX() - ((highTextLen / 2) + mWeatherIcon.getWidth() + 30);
-            canvas.drawBitmap(mWeatherIcon, iconXOffset, mWeatherYOffset - mWeatherIcon.getHeight(), null);
+            float iconXOffset = bounds.centerX() - ((highTextLen / 2) + weatherIcon.getWidth() + 30);
+            canvas.drawBitmap(weatherIcon, iconXOffset, mWeatherYOffset - weatherIcon.getHeight(), null);
         }
     }
 
-    public void setWindowInsets(WindowInsets insets) {
+    // Show the forecast the phone sent for the day, if there is one
+    private void selectWeatherDay(int julianDay) {
+        if (julianDay == mWeatherDay) {
+            return;
+        }
+        mWeatherDay = julianDay;
+        int index = mWeatherPayload != null ? mWeatherPayload.indexOfJulianDay(julianDay) : -1;
+        if (index == -1) {
+            mWeatherHigh = null;
+            mWeatherLow = null;
+            mWeatherIconResource = -1;
+            return;
+        }
+        mWeatherHigh = Utility.formatTemperature(resources, mWeatherPayload.toDisplayUnits(mWeatherPayload.getMaxTemp(index)));
+        mWeatherLow = Utility.formatTemperature(resources, mWeatherPayload.toDisplayUnits(mWeatherPayload.getMinTemp(index)));
+        // The icon itself is looked up in the cache when the weather gets drawn
+        mWeatherIconResource = Utility.getIconResourceForWeatherCondition(mWeatherPayload.getWeatherId(index));
+    }
 
-        boolean isRound = insets.isRound();
+    // Whether the weather was drawn the last time the static layer was built
+    boolean isShowingWeather() {
+        return mWeatherHigh != null;
+    }
+
+    // The icon is as tall as the temperatures next to it
+    private int getWeatherIconHeight() {
+        return (int) mTextTempHighPaint.getTextSize();
+    }
+
+    // Decode the weather icons at the current size ahead of the first weather update
+    public void prewarmWeatherIcons() {
+        mWeatherIcons.prewarm(getWeatherIconHeight());
+    }
+
+    private boolean staticLayerFits(Rect bounds) {
+        return mStaticLayer != null && mStaticLayer.getWidth() == bounds.width() && mStaticLayer.getHeight() == bounds.height();
+    }
+
+    // Anything drawn into the static layer has changed: rebuild it on the next draw.
+    private void invalidateStaticLayer() {
+        mStaticLayerDirty = true;
+    }
+
+    // Free the static layer, the glyphs and the weather icons; the next draw allocates them again.
+    public void release() {
+        releaseStaticLayer();
+        releaseAmbientGlyphs();
+        mWeatherIcons.clear();
+    }
+
+    private void releaseStaticLayer() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+    }
 
+    public void setWindowInsets(WindowInsets insets) {
+        setRound(insets.isRound());
+    }
+
+    void setRound(boolean isRound) {
         mDateYOffset = resources.getDimension(isRound ? R.dimen.date_y_offset_round : R.dimen.date_y_offset);
         mDividerYOffset = resources.getDimension(isRound ? R.dimen.divider_y_offset_round : R.dimen.divider_y_offset);
         mWeatherYOffset = resources.getDimension(isRound ? R.dimen.weather_y_offset_round : R.dimen.weather_y_offset);
@@ -160,6 +337,7 @@ public class DigitalWatchFace {
         mTextDatePaint.setTextSize(dateTextSize);
         mTextTempHighPaint.setTextSize(tempTextSize);
         mTextTempLowPaint.setTextSize(tempTextSize);
+        invalidateStaticLayer();
     }
 
     // Helper methods in order to compute the x offset of both mTime and date drawings.
@@ -190,34 +368,40 @@ public class DigitalWatchFace {
         dateAndTimeColour = colour;
         mTextTimePaint.setColor(colour);
         mTextDatePaint.setColor(colour);
+        invalidateStaticLayer();
     }
 
     // Update the background color
     public void updateBackgroundColourTo(int colour) {
         backgroundColour = colour;
         backgroundPaint.setColor(colour);
+        invalidateStaticLayer();
     }
 
     // Update to default in Ambient mode
     public void updateBackgroundColourToDefault() {
         backgroundPaint.setColor(BACKGROUND_DEFAULT_COLOUR);
+        invalidateStaticLayer();
     }
 
     // Update to default in Ambient mode
     public void updateDateAndTimeColourToDefault() {
         mTextTimePaint.setColor(DATE_AND_TIME_DEFAULT_COLOUR);
         mTextDatePaint.setColor(DATE_AND_TIME_DEFAULT_COLOUR);
+        invalidateStaticLayer();
     }
 
     // Restore to selected color in non-Ambient mode
     public void restoreDateAndTimeColour() {
         mTextTimePaint.setColor(dateAndTimeColour);
         mTextDatePaint.setColor(dateAndTimeColour);
+        invalidateStaticLayer();
     }
 
     // Restore to selected color in non-Ambient mode
     public void restoreBackgroundColour() {
         backgroundPaint.setColor(backgroundColour);
+        invalidateStaticLayer();
     }
 
 
@@ -226,43 +410,42 @@ public class DigitalWatchFace {
         mTextDatePaint.setAntiAlias(antiAlias);
         mTextTempHighPaint.setAntiAlias(antiAlias);
         mTextTempLowPaint.setAntiAlias(antiAlias);
+        invalidateStaticLayer();
     }
 
     public void setColor(int color) {
         mTextTimePaint.setColor(color);
         mTextDatePaint.setColor(color);
+        invalidateStaticLayer();
     }
 
-    public void setShowSeconds(boolean showSeconds) {
-        shouldShowSeconds = showSeconds;
+    // Ambient mode draws from the glyph atlases instead of the static layer
+    public void setAmbientMode(boolean ambient) {
+        mAmbient = ambient;
+        invalidateStaticLayer();
     }
 
-    public void updateWeatherData(DataMap dataMap) {
-        //  Use keys associated with every item in order to get hold of the sent values
-        if (dataMap.containsKey(Constants.WEATHER_KEY_TEMP_MAX)) {
-            mWeatherHigh = dataMap.getString(Constants.WEATHER_KEY_TEMP_MAX);
-            Log.d(LOG_TAG, "High = " + mWeatherHigh);
-        } else {
-            Log.d(LOG_TAG, "What? No high?");
-        }
+    // Whether the display only shows a few colours in ambient mode
+    public void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+    }
 
-        if (dataMap.containsKey(Constants.WEATHER_KEY_TEMP_MIN)) {
-            mWeatherLow = dataMap.getString(Constants.WEATHER_KEY_TEMP_MIN);
-            Log.d(LOG_TAG, "Low = " + mWeatherLow);
-        } else {
-            Log.d(LOG_TAG, "What? No low?");
-        }
+    // Whether ambient mode has to keep moving what it draws so as not to burn pixels in
+    public void setBurnInProtection(boolean burnInProtection) {
+        mBurnInProtection = burnInProtection;
+    }
 
-        if (dataMap.containsKey(Constants.WEATHER_KEY_ID)) {
-            int weatherId = dataMap.getInt(Constants.WEATHER_KEY_ID);
-            Drawable b = resources.getDrawable(Utility.getIconResourceForWeatherCondition(weatherId));
-            Bitmap icon = ((BitmapDrawable) b).getBitmap();
-            float scaledWidth = (mTextTempHighPaint.getTextSize() / icon.getHeight()) * icon.getWidth();
-            mWeatherIcon = Bitmap.createScaledBitmap(icon, (int) scaledWidth, (int) mTextTempHighPaint.getTextSize(), true);
+    public void setShowSeconds(boolean showSeconds) {
+        shouldShowSeconds = showSeconds;
+    }
 
-        } else {
-            Log.d(LOG_TAG, "What? no weatherId?");
-        }
+    // The forecast from the phone, the weather shown being that of the current day
+    public void updateWeather(WeatherPayload forecast) {
+        mWeatherPayload = forecast;
+        Log.d(LOG_TAG, "Days = " + mWeatherPayload.getDayCount());
+        // Pick the day again on the next draw
+        mWeatherDay = -1;
+        invalidateStaticLayer();
     }
 
     public void updateConfigurationChanges(DataMap dataMap) {
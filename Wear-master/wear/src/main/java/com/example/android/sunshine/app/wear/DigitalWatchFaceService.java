@@ -6,6 +6,7 @@ import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
@@ -16,6 +17,8 @@ import android.view.WindowInsets;
 
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.common.Constants;
+import com.example.android.sunshine.app.common.ForecastDelta;
+import com.example.android.sunshine.app.common.ForecastStore;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -26,11 +29,11 @@ import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
-import java.util.UUID;
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,6 +48,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
     // Update rate in milliseconds for interactive mode. We update once a second since seconds are
     // displayed in interactive mode.
     private static final long INTERACTIVE_TICK_PERIOD_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    // File the last forecast received is kept in
+    private static final String WEATHER_SNAPSHOT_FILE_NAME = "weather_snapshot.bin";
 
     @Override
     public Engine onCreateEngine() {
@@ -54,15 +59,18 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
 
     private class WatchFaceEngine extends CanvasWatchFaceService.Engine {
 
-        private static final String KEY_UUID = "uuid";
-
-
-        // Handler that will post a runnable only if the watch is visible and not in ambient mode in order to start ticking
-        private Handler mTimeTick;
+        // Collects the reasons to redraw until the next frame, and ticks on every second while interactive
+        private FrameScheduler mFrameScheduler;
         // Instance of a watch face
         private DigitalWatchFace mDigitalWatchFace;
         // To synchronize with the data layer API, we have to firstly connect to it through a GoogleApiClient object
         private GoogleApiClient mGoogleApiClient;
+        // The forecast received from the phone so far, and the file it is kept in
+        private ForecastStore mForecastStore;
+        private File mWeatherSnapshotFile;
+        // When the engine was created, and whether the first frame showing the weather was logged
+        private long mCreatedAt;
+        private boolean mFirstWeatherFrameDrawn;
         // Get notified every time there is a change in the data layer
         private final DataApi.DataListener onDataChangedListener = new DataApi.DataListener() {
             @Override
@@ -76,8 +84,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                         if (Constants.WATCH_FACE_SETTINGS_PATH.equals(item.getUri().getPath())) {
                             processConfigurationChange(item);
                         }
-                        if (Constants.WEATHER_DATA_PATH.equals(item.getUri().getPath())) {
-                            processWeatherData(item);
+                        if (Constants.WEATHER_DELTA_PATH.equals(item.getUri().getPath())) {
+                            processWeatherDelta(item);
                         }
                     } else if (event.getType() == DataEvent.TYPE_DELETED) {
                         // DataItem deleted
@@ -85,7 +93,6 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 }
 
                 dataEvents.release();
-                invalidateIfNecessary();
             }
 
         };
@@ -98,10 +105,11 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     if (Constants.WATCH_FACE_SETTINGS_PATH.equals(item.getUri().getPath())) {
                         processConfigurationChange(item);
                     }
-
+                    if (Constants.WEATHER_DELTA_PATH.equals(item.getUri().getPath())) {
+                        processWeatherDelta(item);
+                    }
                 }
                 dataItems.release();
-                invalidateIfNecessary();
             }
         };
 
@@ -115,8 +123,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 Wearable.DataApi.getDataItems(mGoogleApiClient).setResultCallback(onConnectedResultCallback);
                 // Request information about watch settings
                 requestWatchSettingsInfo();
-                // Request information about the weather
-                requestWeatherInfo();
+                // Ask the phone for the days of the forecast missed while disconnected
+                requestWeatherSync();
             }
 
             @Override
@@ -137,20 +145,19 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             Wearable.DataApi.getDataItems(mGoogleApiClient).setResultCallback(onConnectedResultCallback);
         }
 
-        private void requestWeatherInfo() {
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(Constants.WEATHER_DATA_PATH);
-            putDataMapRequest.getDataMap().putString(KEY_UUID, UUID.randomUUID().toString());
-            PutDataRequest request = putDataMapRequest.asPutDataRequest();
+        private void requestWeatherSync() {
+            sendToPhone(Constants.WEATHER_SYNC_PATH, mForecastStore.getVersion());
+        }
 
-            Wearable.DataApi.getDataItems(mGoogleApiClient).setResultCallback(onConnectedResultCallback);
-            Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+        // Sends a forecast version to every connected node, the phone among them
+        private void sendToPhone(final String path, long version) {
+            final byte[] data = ForecastDelta.encodeVersion(version);
+            Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                    .setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
                         @Override
-                        public void onResult(DataApi.DataItemResult dataItemResult) {
-                            if (!dataItemResult.getStatus().isSuccess()) {
-                                Log.d(LOG_TAG, "Failed asking phone for weather data");
-                            } else {
-                                Log.d(LOG_TAG, "Successfully asked for weather data");
+                        public void onResult(NodeApi.GetConnectedNodesResult result) {
+                            for (Node node : result.getNodes()) {
+                                Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(), path, data);
                             }
                         }
                     });
@@ -160,6 +167,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
+            mCreatedAt = SystemClock.elapsedRealtime();
             // In defining the watch face style, you can customise how the UI elements such as the battery
             // indicator are drawn over the watch face or how the cards are behaving in both normal and ambient mode.
             setWatchFaceStyle(new WatchFaceStyle.Builder(DigitalWatchFaceService.this)
@@ -175,11 +183,17 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     .setShowSystemUiTime(false)
                     .build());
 
-            mTimeTick = new Handler(Looper.myLooper());
+            mFrameScheduler = new FrameScheduler(new Handler(Looper.myLooper()), new FrameScheduler.Callback() {
+                @Override
+                public void onFrameRequested() {
+                    invalidate();
+                }
+            });
             startTimerIfNecessary();
             // Initialize the Watch Face
             mDigitalWatchFace = DigitalWatchFace.newInstance(DigitalWatchFaceService.this);
             mDigitalWatchFace.updateBackgroundColourTo(getResources().getColor(R.color.digital_background));
+            restoreWeatherSnapshot();
             // Client to synchronise with data API
             mGoogleApiClient = new GoogleApiClient.Builder(DigitalWatchFaceService.this)
                     .addApi(Wearable.API)
@@ -189,32 +203,10 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void startTimerIfNecessary() {
-            mTimeTick.removeCallbacks(timeRunnable);
             if (isVisible() && !isInAmbientMode()) {
-                mTimeTick.post(timeRunnable);
-            }
-        }
-
-        // Actual runnable posted by mTimeTick handler. It invalidates the watch and schedules
-        // another run of itself on the handler with a delay of one second (since we want to tick every second) if necessary
-        private final Runnable timeRunnable = new Runnable() {
-            @Override
-            public void run() {
-                onSecondTick();
-
-                if (isVisible() && !isInAmbientMode()) {
-                    mTimeTick.postDelayed(this, INTERACTIVE_TICK_PERIOD_UPDATE_RATE_MS);
-                }
-            }
-        };
-
-        private void onSecondTick() {
-            invalidateIfNecessary();
-        }
-
-        private void invalidateIfNecessary() {
-            if (isVisible() && !isInAmbientMode()) {
-                invalidate();
+                mFrameScheduler.startTicking(INTERACTIVE_TICK_PERIOD_UPDATE_RATE_MS);
+            } else {
+                mFrameScheduler.stopTicking();
             }
         }
 
@@ -231,6 +223,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             } else {
                 // Free client when the watch face is not visible anymore.
                 releaseGoogleApiClient();
+                Log.d(LOG_TAG, "Frames drawn: " + mFrameScheduler.getFrameCount()
+                        + ", frames requested: " + mFrameScheduler.getRequestCount());
             }
             startTimerIfNecessary();
         }
@@ -239,7 +233,12 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
             super.onDraw(canvas, bounds);
+            mFrameScheduler.onFrameDrawn();
             mDigitalWatchFace.draw(canvas, bounds);
+            if (!mFirstWeatherFrameDrawn && mDigitalWatchFace.isShowingWeather()) {
+                mFirstWeatherFrameDrawn = true;
+                Log.d(LOG_TAG, "First weather frame " + (SystemClock.elapsedRealtime() - mCreatedAt) + "ms after creation");
+            }
         }
 
         // Release connection when not needed
@@ -259,6 +258,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             Log.d(LOG_TAG, "Enter Ambient Mode");
             // Battery performance optimizations
             mDigitalWatchFace.setAntiAlias(!inAmbientMode);
+            mDigitalWatchFace.setAmbientMode(inAmbientMode);
             // We set the color to gray in Ambien
             mDigitalWatchFace.setColor(inAmbientMode ? Color.GRAY : Color.WHITE);
             // Hide seconds in order to minimize the amount of animations (draws)
@@ -272,14 +272,24 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 mDigitalWatchFace.restoreBackgroundColour();
                 mDigitalWatchFace.restoreDateAndTimeColour();
             }
-            invalidate();
+            mFrameScheduler.requestFrame();
             startTimerIfNecessary();
         }
 
+        // Called with the display's properties once it is known whether ambient mode needs
+        // burn-in protection or only shows a few colours
+        @Override
+        public void onPropertiesChanged(Bundle properties) {
+            super.onPropertiesChanged(properties);
+            mDigitalWatchFace.setLowBitAmbient(properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false));
+            mDigitalWatchFace.setBurnInProtection(properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
+        }
+
         @Override
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
             mDigitalWatchFace.setWindowInsets(insets);
+            mDigitalWatchFace.prewarmWeatherIcons();
         }
 
         // Callback is invoked every minute when the watch is in ambient mode. It is very important to consider that this callback is only
@@ -289,7 +299,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             super.onTimeTick();
             // Above being said, usually, here we will have only to invalidate() the watch in order to trigger onDraw(). In order to keep track
             // of time outside ambient mode, we will have to provide our own mechanism.
-            invalidate();
+            mFrameScheduler.requestFrame();
         }
 
         private void processConfigurationChange(DataItem item) {
@@ -297,21 +307,62 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
             // Upgrade watch settings
             mDigitalWatchFace.updateConfigurationChanges(dataMap);
-            invalidate();
+            mFrameScheduler.requestFrame();
         }
 
-        private void processWeatherData(DataItem item) {
+        // Show the forecast kept from the last run, unless it is too old, and sync from its version
+        private void restoreWeatherSnapshot() {
+            mWeatherSnapshotFile = new File(getFilesDir(), WEATHER_SNAPSHOT_FILE_NAME);
+            WeatherSnapshot snapshot = WeatherSnapshot.read(mWeatherSnapshotFile);
+            if (snapshot == null) {
+                mForecastStore = new ForecastStore();
+                return;
+            }
+            if (!snapshot.isStale(System.currentTimeMillis())) {
+                mForecastStore = snapshot.toForecastStore();
+                mDigitalWatchFace.updateWeather(snapshot.getForecast());
+            } else {
+                // Starting from no version, so the phone sends the whole forecast again even
+                // when it has not changed since the snapshot
+                Log.d(LOG_TAG, "Not showing the weather snapshot from " + snapshot.getUpdateTime());
+                mForecastStore = new ForecastStore();
+            }
+        }
+
+        private void processWeatherDelta(DataItem item) {
             //  Acquire
             DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-            // Update the weather data
-            mDigitalWatchFace.updateWeatherData(dataMap);
-            invalidate();
+            ForecastDelta delta;
+            try {
+                delta = ForecastDelta.fromByteArray(dataMap.getByteArray(Constants.WEATHER_KEY_DELTA));
+            } catch (IllegalArgumentException e) {
+                Log.w(LOG_TAG, "Ignoring weather delta: " + e.getMessage());
+                return;
+            }
+            switch (mForecastStore.apply(delta)) {
+                case ForecastStore.APPLIED:
+                    // Update the weather data
+                    mDigitalWatchFace.updateWeather(mForecastStore.getForecast());
+                    WeatherSnapshot.write(mWeatherSnapshotFile, mForecastStore, System.currentTimeMillis());
+                    sendToPhone(Constants.WEATHER_ACK_PATH, mForecastStore.getVersion());
+                    mFrameScheduler.requestFrame();
+                    break;
+                case ForecastStore.GAP:
+                    // Deltas were missed; ask for everything since the version the store has
+                    Log.d(LOG_TAG, "Weather delta from " + delta.getBaseVersion() + " but have "
+                            + mForecastStore.getVersion());
+                    requestWeatherSync();
+                    break;
+                default:
+                    break;
+            }
         }
 
         @Override
         public void onDestroy() {
-            mTimeTick.removeCallbacks(timeRunnable);
+            mFrameScheduler.stopTicking();
             releaseGoogleApiClient();
+            mDigitalWatchFace.release();
             super.onDestroy();
         }
     }
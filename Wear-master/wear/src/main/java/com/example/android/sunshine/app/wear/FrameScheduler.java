@@ -0,0 +1,79 @@
+package com.example.android.sunshine.app.wear;
+
+import android.os.Handler;
+
+/**
+ * Decides when the watch face redraws.
+ *
+ * Every reason to redraw, from the clock ticking to a weather update, is a request for a frame,
+ * passed straight on to the engine's invalidate(), which already draws once on the next vsync
+ * however many times it was called.  Requests and drawn frames are counted, so the redraws that
+ * folding saved can be told.  While ticking, the tick requests a frame on each wall-clock second
+ * rather than a second after the last one, so the seconds shown do not drift.
+ *
+ * Must be created and used on a thread with a looper, the engine's.
+ */
+final class FrameScheduler {
+
+    interface Callback {
+        /**
+         * Asks for a frame, with the engine's invalidate().
+         */
+        void onFrameRequested();
+    }
+
+    private final Callback mCallback;
+    private final Handler mHandler;
+
+    private long mTickPeriodMs;
+    private int mFrameCount;
+    private int mRequestCount;
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            requestFrame();
+            mHandler.postDelayed(this, delayToNextTick(System.currentTimeMillis(), mTickPeriodMs));
+        }
+    };
+
+    FrameScheduler(Handler handler, Callback callback) {
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    void requestFrame() {
+        mRequestCount++;
+        mCallback.onFrameRequested();
+    }
+
+    // Called as a frame is drawn
+    void onFrameDrawn() {
+        mFrameCount++;
+    }
+
+    // Requests a frame now and then on every multiple of the period on the wall clock
+    void startTicking(long periodMs) {
+        stopTicking();
+        mTickPeriodMs = periodMs;
+        mHandler.post(mTickRunnable);
+    }
+
+    void stopTicking() {
+        mHandler.removeCallbacks(mTickRunnable);
+    }
+
+    // Frames drawn
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    // Frames requested, more than were drawn when requests came in before the same vsync
+    int getRequestCount() {
+        return mRequestCount;
+    }
+
+    static long delayToNextTick(long now, long periodMs) {
+        return periodMs - (now % periodMs);
+    }
+}
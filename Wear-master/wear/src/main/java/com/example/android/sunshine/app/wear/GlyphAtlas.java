@@ -0,0 +1,100 @@
+package com.example.android.sunshine.app.wear;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+/**
+ * The digits and the separator rendered once, without anti-aliasing, into an alpha-only
+ * bitmap, so every pixel is either on or off.  Ambient mode draws the time and date by copying
+ * glyphs out of it in the paint's colour, which needs no text layout or measuring per frame
+ * and suits low-bit ambient displays.
+ */
+final class GlyphAtlas {
+
+    private static final String GLYPHS = "0123456789.";
+    private static final int SEPARATOR = 10;
+
+    private final Bitmap mAtlas;
+    private final int[] mGlyphLefts = new int[GLYPHS.length()];
+    private final int[] mGlyphWidths = new int[GLYPHS.length()];
+    private final int mAscent;
+    private final int mHeight;
+    private final int mDigitHeight;
+    private final float mTextSize;
+
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+
+    GlyphAtlas(float textSize, Typeface typeface) {
+        mTextSize = textSize;
+        Paint paint = new Paint();
+        paint.setTextSize(textSize);
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(false);
+        paint.setColor(Color.WHITE);
+
+        Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+        mAscent = metrics.ascent;
+        mHeight = metrics.descent - metrics.ascent;
+        Rect digitBounds = new Rect();
+        paint.getTextBounds("0", 0, 1, digitBounds);
+        mDigitHeight = digitBounds.height();
+
+        float[] advances = new float[GLYPHS.length()];
+        paint.getTextWidths(GLYPHS, advances);
+        int width = 0;
+        for (int i = 0; i < advances.length; i++) {
+            mGlyphLefts[i] = width;
+            mGlyphWidths[i] = (int) Math.ceil(advances[i]);
+            width += mGlyphWidths[i];
+        }
+
+        mAtlas = Bitmap.createBitmap(width, mHeight, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mAtlas);
+        for (int i = 0; i < GLYPHS.length(); i++) {
+            canvas.drawText(GLYPHS, i, i + 1, mGlyphLefts[i], -mAscent, paint);
+        }
+    }
+
+    float getTextSize() {
+        return mTextSize;
+    }
+
+    // Height of a digit above the baseline
+    int getDigitHeight() {
+        return mDigitHeight;
+    }
+
+    int measure(char[] chars, int count) {
+        int width = 0;
+        for (int i = 0; i < count; i++) {
+            width += mGlyphWidths[indexOf(chars[i])];
+        }
+        return width;
+    }
+
+    // Draws the chars, which must all be digits or separators, from x along the baseline
+    void draw(Canvas canvas, char[] chars, int count, int x, int baseline, Paint paint) {
+        int top = baseline + mAscent;
+        for (int i = 0; i < count; i++) {
+            int glyph = indexOf(chars[i]);
+            int width = mGlyphWidths[glyph];
+            mSrc.set(mGlyphLefts[glyph], 0, mGlyphLefts[glyph] + width, mHeight);
+            mDst.set(x, top, x + width, top + mHeight);
+            canvas.drawBitmap(mAtlas, mSrc, mDst, paint);
+            x += width;
+        }
+    }
+
+    void recycle() {
+        mAtlas.recycle();
+    }
+
+    private static int indexOf(char c) {
+        return c == '.' ? SEPARATOR : c - '0';
+    }
+}
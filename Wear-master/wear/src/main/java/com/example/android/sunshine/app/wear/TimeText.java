@@ -0,0 +1,68 @@
+package com.example.android.sunshine.app.wear;
+
+import android.graphics.Paint;
+
+/**
+ * The time as "hh.mm" or "hh.mm.ss", or the date as "dd.mm.yyyy", written into a reused char
+ * array so that drawing it every second allocates nothing.  Its width is summed from the advance
+ * of each glyph, measured once per text size rather than once per frame.
+ */
+final class TimeText {
+
+    private static final String GLYPHS = "0123456789.";
+    private static final int SEPARATOR = 10;
+
+    private final char[] mChars = new char[10];
+    private int mLength;
+
+    private final float[] mGlyphWidths = new float[GLYPHS.length()];
+    private float mGlyphWidthsTextSize = -1;
+
+    void set(int hour, int minute, int second, boolean showSeconds) {
+        int i = putTwoDigits(0, hour);
+        mChars[i++] = '.';
+        i = putTwoDigits(i, minute);
+        if (showSeconds) {
+            mChars[i++] = '.';
+            i = putTwoDigits(i, second);
+        }
+        mLength = i;
+    }
+
+    void setDate(int monthDay, int month, int year) {
+        int i = putTwoDigits(0, monthDay);
+        mChars[i++] = '.';
+        i = putTwoDigits(i, month);
+        mChars[i++] = '.';
+        i = putTwoDigits(i, year / 100);
+        mLength = putTwoDigits(i, year % 100);
+    }
+
+    private int putTwoDigits(int index, int value) {
+        mChars[index] = (char) ('0' + value / 10);
+        mChars[index + 1] = (char) ('0' + value % 10);
+        return index + 2;
+    }
+
+    char[] getChars() {
+        return mChars;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    // The widths are measured again when the text size changes; the typeface never does.
+    float measure(Paint paint) {
+        if (paint.getTextSize() != mGlyphWidthsTextSize) {
+            paint.getTextWidths(GLYPHS, mGlyphWidths);
+            mGlyphWidthsTextSize = paint.getTextSize();
+        }
+        float width = 0;
+        for (int i = 0; i < mLength; i++) {
+            char c = mChars[i];
+            width += mGlyphWidths[c == '.' ? SEPARATOR : c - '0'];
+        }
+        return width;
+    }
+}
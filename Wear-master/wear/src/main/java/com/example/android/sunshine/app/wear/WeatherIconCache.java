@@ -0,0 +1,89 @@
+package com.example.android.sunshine.app.wear;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import com.example.android.sunshine.app.R;
+
+/**
+ * Weather icons decoded and scaled to the height they are drawn at, so that a weather update
+ * for a condition already shown, or a rebuild of the static layer, costs a lookup instead of a
+ * decode.
+ *
+ * Icons are keyed by drawable and height.  Evicted icons are recycled, so callers must get an
+ * icon again each time they draw it rather than hold on to it, and only use the cache from the
+ * engine's thread.
+ */
+final class WeatherIconCache {
+
+    private static final int MAX_SIZE_BYTES = 512 * 1024;
+
+    // Every icon Utility.getIconResourceForWeatherCondition can return
+    private static final int[] ICON_RESOURCES = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    private final Resources mResources;
+    private final LruCache<Long, Bitmap> mIcons = new LruCache<Long, Bitmap>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Long key, Bitmap icon) {
+            return icon.getByteCount();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, Bitmap oldIcon, Bitmap newIcon) {
+            oldIcon.recycle();
+        }
+    };
+
+    WeatherIconCache(Resources resources) {
+        mResources = resources;
+    }
+
+    /**
+     * @param iconResource a drawable from Utility.getIconResourceForWeatherCondition, or -1
+     * @return the icon scaled to the height, or null if there is no icon
+     */
+    Bitmap get(int iconResource, int height) {
+        if (iconResource == -1 || height <= 0) {
+            return null;
+        }
+        Long key = ((long) iconResource << 32) | height;
+        Bitmap icon = mIcons.get(key);
+        if (icon == null) {
+            icon = decode(iconResource, height);
+            mIcons.put(key, icon);
+        }
+        return icon;
+    }
+
+    // Decode every icon at the height, ahead of the first weather update.
+    void prewarm(int height) {
+        for (int iconResource : ICON_RESOURCES) {
+            get(iconResource, height);
+        }
+    }
+
+    void clear() {
+        mIcons.evictAll();
+    }
+
+    private Bitmap decode(int iconResource, int height) {
+        Bitmap source = BitmapFactory.decodeResource(mResources, iconResource);
+        int width = Math.max(1, Math.round((float) height / source.getHeight() * source.getWidth()));
+        Bitmap scaled = Bitmap.createScaledBitmap(source, width, height, true);
+        if (scaled != source) {
+            source.recycle();
+        }
+        return scaled;
+    }
+}
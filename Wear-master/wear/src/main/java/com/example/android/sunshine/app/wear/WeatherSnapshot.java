@@ -0,0 +1,111 @@
+package com.example.android.sunshine.app.wear;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.app.common.ForecastStore;
+import com.example.android.sunshine.app.common.WeatherPayload;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The watch's forecast as last received from the phone, kept in a file so the face shows the
+ * weather from its first frame rather than after the phone answers.
+ *
+ * The file holds the forecast version (long), the time it was received (long), then the
+ * forecast as a {@link WeatherPayload}.
+ */
+final class WeatherSnapshot {
+
+    private static final String LOG_TAG = WeatherSnapshot.class.getSimpleName();
+
+    // The phone syncs every few hours, so a forecast a day old means it has not been around
+    static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int HEADER_SIZE = 8 + 8;
+
+    private final long mVersion;
+    private final long mUpdateTime;
+    private final WeatherPayload mForecast;
+
+    private WeatherSnapshot(long version, long updateTime, WeatherPayload forecast) {
+        mVersion = version;
+        mUpdateTime = updateTime;
+        mForecast = forecast;
+    }
+
+    long getVersion() {
+        return mVersion;
+    }
+
+    long getUpdateTime() {
+        return mUpdateTime;
+    }
+
+    WeatherPayload getForecast() {
+        return mForecast;
+    }
+
+    // A store holding the snapshot's forecast, so the phone only sends what changed since
+    ForecastStore toForecastStore() {
+        return new ForecastStore(mVersion, mForecast);
+    }
+
+    // Whether the forecast is too old to show, or from a time the clock has since gone back on
+    boolean isStale(long now) {
+        return now - mUpdateTime > MAX_AGE_MS || now < mUpdateTime;
+    }
+
+    /**
+     * @return the snapshot in the file, or null if there is none or it cannot be read
+     */
+    static WeatherSnapshot read(File file) {
+        byte[] bytes;
+        try {
+            bytes = new AtomicFile(file).readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading the weather snapshot", e);
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long version = buffer.getLong();
+            long updateTime = buffer.getLong();
+            WeatherPayload forecast = WeatherPayload.fromByteArray(Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length));
+            return new WeatherSnapshot(version, updateTime, forecast);
+        } catch (BufferUnderflowException e) {
+            Log.e(LOG_TAG, "Discarding a truncated weather snapshot", e);
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Discarding a corrupt weather snapshot", e);
+        }
+        return null;
+    }
+
+    static void write(File file, ForecastStore store, long updateTime) {
+        byte[] forecast = store.getForecast().toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + forecast.length);
+        buffer.putLong(store.getVersion());
+        buffer.putLong(updateTime);
+        buffer.put(forecast);
+
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream out = null;
+        try {
+            out = atomicFile.startWrite();
+            out.write(buffer.array());
+            atomicFile.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing the weather snapshot", e);
+            atomicFile.failWrite(out);
+        }
+    }
+}